@@ -0,0 +1,66 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.Pair;
+import io.sevcik.hypherator.dto.PotentialBreak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Hyphenate#applyBreak(String, PotentialBreak)} for standard breaks, taken from the words of
+ * the {@code base} test dictionary, and for breaks with a non-standard replacement, taken from {@code basealt}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplyBreakBenchmark {
+    @Param({"false", "true"})
+    public boolean replacement;
+
+    private Hyphenate hyphenate;
+    private String[] words;
+    private PotentialBreak[] breaks;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String dictionary = replacement ? "basealt" : "base";
+        HyphenDict dict = BenchmarkData.dictionary(dictionary);
+        hyphenate = new HyphenateImpl();
+        List<String> selectedWords = new ArrayList<>();
+        List<PotentialBreak> selectedBreaks = new ArrayList<>();
+        for (String word : BenchmarkData.words(dictionary)) {
+            for (PotentialBreak pb : hyphenate.hyphenate(dict, word)) {
+                if ((((PotentialBreakImpl) pb).breakRule().getReplacement() != null) == replacement) {
+                    selectedWords.add(word);
+                    selectedBreaks.add(pb);
+                }
+            }
+        }
+        if (selectedBreaks.isEmpty())
+            throw new IllegalStateException("No " + (replacement ? "replacement" : "standard") + " breaks in " + dictionary);
+        words = selectedWords.toArray(new String[0]);
+        breaks = selectedBreaks.toArray(new PotentialBreak[0]);
+    }
+
+    @Benchmark
+    public Pair<String, String> applyBreak() {
+        next = next + 1 < words.length ? next + 1 : 0;
+        return hyphenate.applyBreak(words[next], breaks[next]);
+    }
+}
@@ -0,0 +1,112 @@
+package io.sevcik.hypherator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks: the dictionaries bundled with the library ({@code ro}, {@code la}),
+ * the test dictionaries of the library (e.g. {@code base}, {@code compound}) and words to hyphenate with them.
+ */
+final class BenchmarkData {
+    // fixed, so that all runs hyphenate the same words
+    private static final long SEED = 20250601L;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the raw content of the named dictionary.
+     */
+    static byte[] dictionaryBytes(String name) {
+        switch (name) {
+            case "ro":
+                return resource("/hyphen/ro/ro.dic");
+            case "la":
+                return resource("/hyphen/la/hyph_la.dic");
+            default:
+                return resource("/data/" + name + ".dic");
+        }
+    }
+
+    static HyphenDict dictionary(String name) {
+        try {
+            return HyphenDictBuilder.fromInputStream(new ByteArrayInputStream(dictionaryBytes(name)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the compiled (binary) form of the named dictionary.
+     */
+    static byte[] compiledDictionaryBytes(String name) {
+        try {
+            ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+            HyphenDictCompiler.compile(new ByteArrayInputStream(dictionaryBytes(name)), compiled);
+            return compiled.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns real words of the dictionary's language: the words of a text corpus for the bundled
+     * dictionaries, or the words of the test data for the test dictionaries.
+     */
+    static List<String> words(String name) {
+        List<String> words = new ArrayList<>();
+        if (name.equals("ro") || name.equals("la")) {
+            String text = new String(resource("/corpus/" + name + ".txt"), StandardCharsets.UTF_8);
+            for (String word : text.split("[^\\p{L}]+")) {
+                if (!word.isEmpty())
+                    words.add(word);
+            }
+        } else {
+            String data = new String(resource("/data/" + name + ".dat"), StandardCharsets.UTF_8);
+            for (String line : data.split("\n")) {
+                line = line.trim();
+                // lines with '=' are the expected results
+                if (!line.isEmpty() && !line.contains("="))
+                    words.add(line);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns {@code count} words of exactly {@code length} characters, made of consecutive words of the
+     * dictionary's language glued together and cut to length, so longer inputs behave like compounds.
+     */
+    static String[] wordsOfLength(String name, int length, int count) {
+        List<String> words = words(name);
+        Random random = new Random(SEED);
+        String[] result = new String[count];
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            word.setLength(0);
+            int next = random.nextInt(words.size());
+            while (word.length() < length) {
+                word.append(words.get(next++ % words.size()));
+            }
+            result[i] = word.substring(0, length);
+        }
+        return result;
+    }
+
+    private static byte[] resource(String path) {
+        try (InputStream is = BenchmarkData.class.getResourceAsStream(path)) {
+            if (is == null)
+                throw new IllegalArgumentException("Resource not found: " + path);
+            return is.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
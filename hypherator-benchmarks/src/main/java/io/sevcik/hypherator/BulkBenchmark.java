@@ -0,0 +1,65 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.HyphenationBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of hyphenating a large word collection in parallel, by the number of workers, to show how bulk
+ * hyphenation scales with the cores available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkBenchmark {
+    private static final int WORD_COUNT = 100_000;
+
+    @Param({"ro", "la"})
+    public String dictionary;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Hyphenator hyphenator;
+    private List<String> words;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        hyphenator = new Hyphenator(BenchmarkData.dictionary(dictionary), null, null);
+        List<String> source = BenchmarkData.words(dictionary);
+        words = new ArrayList<>(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words.add(source.get(i % source.size()));
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public HyphenationBatch hyphenateAllAsync() {
+        return hyphenator.hyphenateAllAsync(words, pool).join();
+    }
+}
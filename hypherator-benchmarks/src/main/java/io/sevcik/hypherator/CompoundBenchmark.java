@@ -0,0 +1,71 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.PotentialBreak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of dictionaries with explicit {@code NEXTLEVEL} compound levels, on the compound words of
+ * their test data, and of a bundled dictionary on hyphenated compounds ({@code word-word}), which go
+ * through the implicit compound level every dictionary gets; both for all breaks of the words and for the
+ * break before their middle only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompoundBenchmark {
+    @Param({"compound", "compound2", "compound4", "hyphen", "ro"})
+    public String dictionary;
+
+    private HyphenDict dict;
+    private HyphenateImpl hyphenate;
+    private String[] words;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dict = BenchmarkData.dictionary(dictionary);
+        hyphenate = new HyphenateImpl();
+        List<String> source = BenchmarkData.words(dictionary);
+        if (dictionary.equals("ro")) {
+            List<String> compounds = new ArrayList<>();
+            for (int i = 0; i + 1 < source.size(); i++) {
+                compounds.add(source.get(i) + "-" + source.get(i + 1));
+            }
+            source = compounds;
+        }
+        words = source.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public List<PotentialBreak> hyphenate() {
+        return hyphenate.hyphenate(dict, nextWord());
+    }
+
+    @Benchmark
+    public PotentialBreak breakBefore() {
+        String word = nextWord();
+        return hyphenate.breakBefore(dict, word, word.length() / 2, 9);
+    }
+
+    private String nextWord() {
+        next = next + 1 < words.length ? next + 1 : 0;
+        return words[next];
+    }
+}
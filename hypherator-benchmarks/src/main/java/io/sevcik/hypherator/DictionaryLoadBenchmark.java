@@ -0,0 +1,51 @@
+package io.sevcik.hypherator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a dictionary, from the text format and from the precompiled binary format.
+ * The dictionaries are read from memory, so the numbers do not include any I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictionaryLoadBenchmark {
+    @Param({"ro", "la", "base"})
+    public String dictionary;
+
+    private byte[] text;
+    private byte[] compiled;
+
+    @Setup
+    public void setUp() {
+        text = BenchmarkData.dictionaryBytes(dictionary);
+        compiled = BenchmarkData.compiledDictionaryBytes(dictionary);
+    }
+
+    @Benchmark
+    public HyphenDict parseText() throws IOException {
+        return HyphenDictBuilder.fromInputStream(new ByteArrayInputStream(text));
+    }
+
+    @Benchmark
+    public HyphenDict loadCompiled() throws IOException {
+        return HyphenDictBuilder.fromBinaryStream(new ByteArrayInputStream(compiled));
+    }
+}
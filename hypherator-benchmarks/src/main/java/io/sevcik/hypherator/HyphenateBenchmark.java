@@ -0,0 +1,90 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.PotentialBreak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of hyphenating single words of a given length, with the object and the packed result, of
+ * hyphenating the same words from UTF-8 bytes in a direct buffer, and of looking up the break before the middle
+ * of the word only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HyphenateBenchmark {
+    private static final int WORD_COUNT = 1024;
+
+    @Param({"ro", "la", "base"})
+    public String dictionary;
+
+    @Param({"4", "8", "16", "32"})
+    public int wordLength;
+
+    private HyphenDict dict;
+    private HyphenateImpl hyphenate;
+    private String[] words;
+    private ByteBuffer utf8;
+    private int[] utf8Offsets;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        dict = BenchmarkData.dictionary(dictionary);
+        hyphenate = new HyphenateImpl();
+        words = BenchmarkData.wordsOfLength(dictionary, wordLength, WORD_COUNT);
+        utf8Offsets = new int[WORD_COUNT + 1];
+        byte[][] encoded = new byte[WORD_COUNT][];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            encoded[i] = words[i].getBytes(StandardCharsets.UTF_8);
+            utf8Offsets[i + 1] = utf8Offsets[i] + encoded[i].length;
+        }
+        utf8 = ByteBuffer.allocateDirect(utf8Offsets[WORD_COUNT]);
+        for (byte[] word : encoded) {
+            utf8.put(word);
+        }
+    }
+
+    @Benchmark
+    public List<PotentialBreak> hyphenate() {
+        return hyphenate.hyphenate(dict, nextWord());
+    }
+
+    @Benchmark
+    public PackedBreaks hyphenatePacked() {
+        return hyphenate.hyphenatePacked(dict, nextWord());
+    }
+
+    @Benchmark
+    public Utf8Breaks hyphenateUtf8() {
+        next = (next + 1) & (WORD_COUNT - 1);
+        return hyphenate.hyphenateUtf8(dict, utf8, utf8Offsets[next], utf8Offsets[next + 1]);
+    }
+
+    @Benchmark
+    public PotentialBreak breakBefore() {
+        return hyphenate.breakBefore(dict, nextWord(), wordLength / 2, 9);
+    }
+
+    private String nextWord() {
+        next = (next + 1) & (WORD_COUNT - 1);
+        return words[next];
+    }
+}
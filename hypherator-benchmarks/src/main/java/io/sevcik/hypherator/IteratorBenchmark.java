@@ -0,0 +1,59 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.Pair;
+import io.sevcik.hypherator.dto.PotentialBreak;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the typical {@link HyphenationIterator} use: set a word, walk all its breaks of the given
+ * urgency and split the word at each of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IteratorBenchmark {
+    @Param({"ro", "la"})
+    public String dictionary;
+
+    @Param({"1", "5", "9"})
+    public int urgency;
+
+    private HyphenationIterator iterator;
+    private String[] words;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        iterator = new HyphenationIteratorImpl(BenchmarkData.dictionary(dictionary));
+        iterator.setUrgency(urgency);
+        List<String> source = BenchmarkData.words(dictionary);
+        words = source.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        next = next + 1 < words.length ? next + 1 : 0;
+        iterator.setWord(words[next]);
+        for (PotentialBreak pb = iterator.first(); pb != HyphenationIterator.DONE; pb = iterator.next()) {
+            Pair<String, String> parts = iterator.applyBreak(pb);
+            blackhole.consume(parts);
+        }
+    }
+}
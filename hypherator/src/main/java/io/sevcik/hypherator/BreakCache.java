@@ -0,0 +1,109 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.CacheStats;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of hyphenation results of a single {@link HyphenDict}, keyed by word.
+ * <p>
+ * The cache is split into independently locked stripes, each keeping its words in least-recently-used order.
+ * When a stripe is full, a new word is only admitted if the {@link FrequencySketch} has seen it more often than
+ * the least recently used word it would replace, so a burst of rare words cannot flush the frequent ones.
+ * Results are stored as immutable {@link PackedBreaks}, so they are shared by all readers as they are.
+ */
+class BreakCache {
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_SIZE = 8;
+
+    private final Stripe[] stripes;
+    private final FrequencySketch sketch;
+    private final int maximumSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    BreakCache(int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Cache size must be positive");
+        this.maximumSize = maximumSize;
+        int stripeCount = Math.min(MAX_STRIPES, Math.max(1, Integer.highestOneBit(maximumSize / MIN_STRIPE_SIZE)));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // the first stripes take the remainder, so that the capacities add up to the maximum size
+            stripes[i] = new Stripe(maximumSize / stripeCount + (i < maximumSize % stripeCount ? 1 : 0));
+        }
+        sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Returns the cached breaks of the word, or {@code null} if the word is not cached.
+     */
+    PackedBreaks get(String word) {
+        sketch.increment(word);
+        Stripe stripe = stripeFor(word);
+        PackedBreaks breaks;
+        synchronized (stripe) {
+            breaks = stripe.get(word);
+        }
+        if (breaks == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return breaks;
+    }
+
+    /**
+     * Offers the breaks of the word to the cache; they are stored if there is room, or if the word is
+     * more frequent than the least recently used word of its stripe.
+     */
+    void put(String word, PackedBreaks breaks) {
+        Stripe stripe = stripeFor(word);
+        synchronized (stripe) {
+            if (stripe.size() < stripe.capacity || stripe.containsKey(word)) {
+                stripe.put(word, breaks);
+                return;
+            }
+            Iterator<String> eldest = stripe.keySet().iterator();
+            String victim = eldest.next();
+            if (sketch.frequency(word) > sketch.frequency(victim)) {
+                eldest.remove();
+                stripe.put(word, breaks);
+                evictions.increment();
+            } else {
+                rejections.increment();
+            }
+        }
+    }
+
+    CacheStats stats() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), size, maximumSize);
+    }
+
+    private Stripe stripeFor(String word) {
+        int hash = word.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static class Stripe extends LinkedHashMap<String, PackedBreaks> {
+        private static final long serialVersionUID = 1L;
+
+        final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+    }
+}
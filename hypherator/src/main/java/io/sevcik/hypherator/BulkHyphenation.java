@@ -0,0 +1,136 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.HyphenationBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hyphenates large collections of words in parallel.
+ * <p>
+ * The words are split into chunks of about {@value #CHUNK_SIZE} words, every chunk is hyphenated as a whole by
+ * {@link Hyphenator#hyphenateAll(List)} with the engine of the thread running it, and the results of all chunks
+ * are merged once, in the order of the words. On a {@link ForkJoinPool} the words are split by the workers as
+ * they go, so idle workers steal the halves not yet started; other executors get the chunks split up front.
+ */
+final class BulkHyphenation {
+    static final int CHUNK_SIZE = 1024;
+
+    private BulkHyphenation() {
+    }
+
+    static CompletableFuture<HyphenationBatch> hyphenate(Hyphenator hyphenator, Spliterator<? extends CharSequence> words, Executor executor) {
+        if (executor instanceof ForkJoinPool) {
+            return CompletableFuture.supplyAsync(() -> merge(new ChunkTask(hyphenator, words).invoke()), executor);
+        }
+        List<CompletableFuture<HyphenationBatch>> chunks = new ArrayList<>();
+        for (Spliterator<? extends CharSequence> chunk : split(words)) {
+            chunks.add(CompletableFuture.supplyAsync(() -> hyphenateChunk(hyphenator, chunk), executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<HyphenationBatch> results = new ArrayList<>(chunks.size());
+            for (CompletableFuture<HyphenationBatch> chunk : chunks) {
+                results.add(chunk.join());
+            }
+            return merge(results);
+        });
+    }
+
+    /**
+     * Splits the words into chunks of at most {@value #CHUNK_SIZE} words where the spliterator allows it,
+     * in the order of the words.
+     */
+    private static List<Spliterator<? extends CharSequence>> split(Spliterator<? extends CharSequence> words) {
+        List<Spliterator<? extends CharSequence>> chunks = new ArrayList<>();
+        Deque<Spliterator<? extends CharSequence>> pending = new ArrayDeque<>();
+        pending.push(words);
+        while (!pending.isEmpty()) {
+            Spliterator<? extends CharSequence> rest = pending.pop();
+            Spliterator<? extends CharSequence> prefix = rest.estimateSize() > CHUNK_SIZE ? rest.trySplit() : null;
+            if (prefix == null) {
+                chunks.add(rest);
+            } else {
+                pending.push(rest);
+                pending.push(prefix);
+            }
+        }
+        return chunks;
+    }
+
+    private static HyphenationBatch hyphenateChunk(Hyphenator hyphenator, Spliterator<? extends CharSequence> chunk) {
+        long size = chunk.estimateSize();
+        List<CharSequence> words = new ArrayList<>(size <= CHUNK_SIZE ? (int) size : CHUNK_SIZE);
+        chunk.forEachRemaining(words::add);
+        return hyphenator.hyphenateAll(words);
+    }
+
+    /**
+     * Concatenates the results of consecutive chunks.
+     */
+    static HyphenationBatch merge(List<HyphenationBatch> results) {
+        if (results.size() == 1)
+            return results.get(0);
+        int wordCount = 0;
+        int breakCount = 0;
+        for (HyphenationBatch result : results) {
+            wordCount += result.getWordCount();
+            breakCount += result.getBreakCount();
+        }
+        int[] offsets = new int[wordCount + 1];
+        int[] positions = new int[breakCount];
+        int[] priorities = new int[breakCount];
+        int words = 0;
+        int breaks = 0;
+        for (HyphenationBatch result : results) {
+            int[] resultOffsets = result.getOffsets();
+            for (int w = 0; w < result.getWordCount(); w++) {
+                offsets[words + w] = breaks + resultOffsets[w];
+            }
+            System.arraycopy(result.getPositions(), 0, positions, breaks, result.getBreakCount());
+            System.arraycopy(result.getPriorities(), 0, priorities, breaks, result.getBreakCount());
+            words += result.getWordCount();
+            breaks += result.getBreakCount();
+        }
+        offsets[wordCount] = breakCount;
+        return new HyphenationBatch(offsets, positions, priorities);
+    }
+
+    /**
+     * Hyphenates a part of the words, forking off its first half while it is larger than a chunk.
+     * Returns the results of its chunks in order, to be merged once at the end.
+     */
+    private static final class ChunkTask extends RecursiveTask<List<HyphenationBatch>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Hyphenator hyphenator;
+        private final Spliterator<? extends CharSequence> words;
+
+        ChunkTask(Hyphenator hyphenator, Spliterator<? extends CharSequence> words) {
+            this.hyphenator = hyphenator;
+            this.words = words;
+        }
+
+        @Override
+        protected List<HyphenationBatch> compute() {
+            Spliterator<? extends CharSequence> prefix = words.estimateSize() > CHUNK_SIZE ? words.trySplit() : null;
+            if (prefix == null) {
+                List<HyphenationBatch> result = new ArrayList<>();
+                result.add(hyphenateChunk(hyphenator, words));
+                return result;
+            }
+            ChunkTask first = new ChunkTask(hyphenator, prefix);
+            first.fork();
+            List<HyphenationBatch> rest = new ChunkTask(hyphenator, words).compute();
+            List<HyphenationBatch> result = first.join();
+            result.addAll(rest);
+            return result;
+        }
+    }
+}
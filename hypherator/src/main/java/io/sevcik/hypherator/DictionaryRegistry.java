@@ -0,0 +1,334 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.CacheStats;
+import io.sevcik.hypherator.dto.DictionaryEntry;
+import io.sevcik.hypherator.dto.MetricsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thread-safe registry of the dictionaries known to {@link Hypherator}.
+ * <p>
+ * The locale index is immutable and built once; locales are looked up through a {@link LocaleResolver}, so
+ * variants without a dictionary of their own fall back to a more general one. Every dictionary entry is loaded
+ * at most once: the first thread asking for one of its locales loads it, concurrent requests for the same entry
+ * wait for that load, and all later lookups are a lock-free read of a completed future. Loads can also be
+ * started on an executor, so that several dictionaries are parsed in parallel. Dictionaries are immutable, so
+ * the loaded instances are shared by all threads as they are.
+ */
+class DictionaryRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryRegistry.class);
+
+    /**
+     * Loads the dictionary of an entry.
+     */
+    interface Loader {
+        HyphenDict load(DictionaryEntry entry) throws IOException;
+    }
+
+    private final Map<String, DictionaryEntry> entries;
+    private final LocaleResolver resolver;
+    private final Loader loader;
+    // completed with null if the dictionary failed to load, so that it is not parsed again on every request
+    private final ConcurrentHashMap<DictionaryEntry, CompletableFuture<HyphenDict>> loads = new ConcurrentHashMap<>();
+    // result caches by dictionary (identity), created on first use while caching is enabled
+    private final ConcurrentHashMap<HyphenDict, BreakCache> caches = new ConcurrentHashMap<>();
+    private volatile int cacheSize = 0;
+    // load metrics of every loaded dictionary; hyphenation is only recorded while metrics are enabled
+    private final ConcurrentHashMap<HyphenDict, HyphenationMetrics> metrics = new ConcurrentHashMap<>();
+    private volatile boolean metricsEnabled = false;
+    // persistent result caches by dictionary (identity), opened on first use while a directory is set
+    private final ConcurrentHashMap<HyphenDict, PersistentBreakCache> persistentCaches = new ConcurrentHashMap<>();
+    private volatile Path persistentCacheDirectory;
+    private volatile long persistentCacheSize;
+    // shared hyphenators by dictionary (identity), dropped when the cache or metrics settings change
+    private final ConcurrentHashMap<HyphenDict, Hyphenator> hyphenators = new ConcurrentHashMap<>();
+
+    DictionaryRegistry(Map<String, DictionaryEntry> entries, Loader loader) {
+        this.entries = Map.copyOf(entries);
+        this.resolver = new LocaleResolver(this.entries.keySet());
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the dictionary of the locale, loading it first if needed.
+     *
+     * @return the dictionary, or {@code null} if there is no dictionary for the locale or it cannot be loaded
+     */
+    HyphenDict get(String locale) {
+        return load(locale, null).join();
+    }
+
+    /**
+     * Returns the load of the locale's dictionary, starting it if nobody has yet. A new load runs on the
+     * executor, or on the calling thread if the executor is {@code null} or rejects it.
+     *
+     * @return the load, completed with {@code null} if there is no dictionary for the locale or it cannot be loaded
+     */
+    CompletableFuture<HyphenDict> load(String locale, Executor executor) {
+        DictionaryEntry entry = entry(locale);
+        if (entry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return load(entry, executor);
+    }
+
+    /**
+     * Returns the load of the entry's dictionary, starting it if nobody has yet.
+     *
+     * @see #load(String, Executor)
+     */
+    CompletableFuture<HyphenDict> load(DictionaryEntry entry, Executor executor) {
+        CompletableFuture<HyphenDict> load = loads.get(entry);
+        if (load != null) {
+            return load;
+        }
+        CompletableFuture<HyphenDict> newLoad = new CompletableFuture<>();
+        load = loads.putIfAbsent(entry, newLoad);
+        if (load != null) {
+            return load;
+        }
+        if (executor != null) {
+            try {
+                executor.execute(() -> loadInto(newLoad, entry));
+                return newLoad;
+            } catch (RejectedExecutionException e) {
+                logger.debug("Executor rejected loading of {}, loading on the calling thread", entry.getLocations().get(0));
+            }
+        }
+        loadInto(newLoad, entry);
+        return newLoad;
+    }
+
+    /**
+     * Loads the dictionary of the entry again and swaps it in if it loads. Readers are never blocked: until
+     * the swap they get the old dictionary, and iterators and hyphenators created from it keep using it.
+     * Entries that have not been loaded yet are left alone, as their first load reads the current files anyway.
+     *
+     * @return whether a new dictionary was swapped in
+     */
+    boolean reload(DictionaryEntry entry) {
+        CompletableFuture<HyphenDict> current = loads.get(entry);
+        if (current == null)
+            return false;
+        HyphenDict old = current.join();
+        HyphenDict dict = loadEntry(entry);
+        if (dict == null)
+            return false;
+        if (!loads.replace(entry, current, CompletableFuture.completedFuture(dict))) {
+            // a concurrent reload swapped in its dictionary first; it read the files no earlier than this one
+            metrics.remove(dict);
+            return false;
+        }
+        if (old != null) {
+            // retired first, so that a reader still holding the old dictionary either sees it retired or has
+            // already put its state, which is removed here
+            old.retired = true;
+            caches.remove(old);
+            hyphenators.remove(old);
+            metrics.remove(old);
+            close(persistentCaches.remove(old));
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the registry knows a dictionary for the locale, without loading it.
+     */
+    boolean contains(String locale) {
+        return resolver.resolve(locale) != null;
+    }
+
+    /**
+     * Returns the locale whose dictionary serves the given one, or {@code null} if there is none.
+     */
+    String resolve(String locale) {
+        return resolver.resolve(locale);
+    }
+
+    /**
+     * Returns the entry of the dictionary serving the locale, or {@code null} if there is none.
+     */
+    DictionaryEntry entry(String locale) {
+        String resolved = resolver.resolve(locale);
+        return resolved != null ? entries.get(resolved) : null;
+    }
+
+    Map<String, DictionaryEntry> entries() {
+        return entries;
+    }
+
+    /**
+     * Returns a snapshot of the dictionaries loaded so far, by locale.
+     */
+    Map<String, HyphenDict> loaded() {
+        Map<String, HyphenDict> result = new HashMap<>();
+        for (Map.Entry<String, DictionaryEntry> entry : entries.entrySet()) {
+            CompletableFuture<HyphenDict> load = loads.get(entry.getValue());
+            if (load != null && load.isDone() && load.join() != null) {
+                result.put(entry.getKey(), load.join());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the maximum number of words cached per dictionary; 0 disables caching.
+     * Existing caches are dropped, so the new size applies to all dictionaries.
+     */
+    void setCacheSize(int cacheSize) {
+        if (cacheSize < 0)
+            throw new IllegalArgumentException("Cache size cannot be negative");
+        this.cacheSize = cacheSize;
+        caches.clear();
+        hyphenators.clear();
+    }
+
+    /**
+     * Returns the result cache of the dictionary, or {@code null} if caching is disabled.
+     */
+    BreakCache cacheFor(HyphenDict dict) {
+        int size = cacheSize;
+        if (size == 0)
+            return null;
+        BreakCache cache = caches.computeIfAbsent(dict, d -> new BreakCache(size));
+        if (dict.retired)
+            caches.remove(dict, cache);
+        return cache;
+    }
+
+    /**
+     * Returns the statistics of the result cache of the locale's dictionary, or {@code null} if it has none.
+     */
+    CacheStats cacheStats(String locale) {
+        HyphenDict dict = loadedDictionary(locale);
+        BreakCache cache = dict != null ? caches.get(dict) : null;
+        return cache != null ? cache.stats() : null;
+    }
+
+    /**
+     * Sets the directory of the persistent result caches and their maximum size per dictionary in bytes;
+     * a {@code null} directory disables them. Open caches are closed, their files stay.
+     */
+    void setPersistentCache(Path directory, long maxBytes) {
+        if (directory != null && maxBytes < PersistentBreakCache.MIN_SIZE)
+            throw new IllegalArgumentException("Persistent cache size must be at least " + PersistentBreakCache.MIN_SIZE + " bytes");
+        this.persistentCacheDirectory = directory;
+        this.persistentCacheSize = maxBytes;
+        hyphenators.clear();
+        for (HyphenDict dict : persistentCaches.keySet()) {
+            close(persistentCaches.remove(dict));
+        }
+    }
+
+    /**
+     * Returns the persistent result cache of the dictionary, or {@code null} if it is disabled or cannot be opened.
+     */
+    PersistentBreakCache persistentCacheFor(HyphenDict dict) {
+        Path directory = persistentCacheDirectory;
+        if (directory == null)
+            return null;
+        if (dict.retired)
+            return null;
+        PersistentBreakCache cache = persistentCaches.computeIfAbsent(dict, d -> {
+            try {
+                return PersistentBreakCache.open(directory, d, persistentCacheSize);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Cannot open persistent cache in {}", directory, e);
+                return null;
+            }
+        });
+        if (cache != null && dict.retired && persistentCaches.remove(dict, cache)) {
+            close(cache);
+            return null;
+        }
+        return cache;
+    }
+
+    void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        hyphenators.clear();
+    }
+
+    /**
+     * Returns the hyphenator of the dictionary, shared by all threads and using its current cache and metrics.
+     */
+    Hyphenator hyphenatorFor(HyphenDict dict) {
+        Hyphenator hyphenator = hyphenators.computeIfAbsent(dict, d -> new Hyphenator(d, cacheFor(d), persistentCacheFor(d), metricsFor(d)));
+        if (dict.retired)
+            hyphenators.remove(dict, hyphenator);
+        return hyphenator;
+    }
+
+    /**
+     * Returns the metrics to record the hyphenation with the dictionary into, or {@code null} if metrics are disabled.
+     */
+    HyphenationMetrics metricsFor(HyphenDict dict) {
+        return metricsEnabled ? metrics.get(dict) : null;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the locale's dictionary, or {@code null} if it has not been loaded.
+     */
+    MetricsSnapshot metricsSnapshot(String locale) {
+        HyphenDict dict = loadedDictionary(locale);
+        HyphenationMetrics dictMetrics = dict != null ? metrics.get(dict) : null;
+        return dictMetrics != null ? dictMetrics.snapshot() : null;
+    }
+
+    private HyphenDict loadedDictionary(String locale) {
+        DictionaryEntry entry = entry(locale);
+        CompletableFuture<HyphenDict> load = entry != null ? loads.get(entry) : null;
+        if (load == null || !load.isDone())
+            return null;
+        return load.join();
+    }
+
+    private static void close(PersistentBreakCache cache) {
+        if (cache == null)
+            return;
+        try {
+            cache.close();
+        } catch (IOException e) {
+            logger.debug("Cannot close persistent cache {}", cache.file(), e);
+        }
+    }
+
+    /**
+     * Completes the load with the dictionary of the entry. The load is completed even if the loader throws
+     * an {@link Error}, which is passed on, so that threads waiting for it are never blocked forever.
+     */
+    private void loadInto(CompletableFuture<HyphenDict> load, DictionaryEntry entry) {
+        try {
+            load.complete(loadEntry(entry));
+        } finally {
+            load.complete(null);
+        }
+    }
+
+    private HyphenDict loadEntry(DictionaryEntry entry) {
+        try {
+            logger.info("Loading dictionary: {} {}", entry.getLocations().get(0), entry.getLocales());
+            long start = System.nanoTime();
+            HyphenDict dict = loader.load(entry);
+            if (dict != null) {
+                long footprint = dict.footprint();
+                metrics.put(dict, new HyphenationMetrics(System.nanoTime() - start, dict.patternCount(), footprint));
+                logger.debug("Loaded dictionary: {}, {} patterns, about {} KiB", entry.getLocations().get(0), dict.patternCount(), footprint / 1024);
+            }
+            return dict;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load dictionary: {}", entry.getLocations().get(0), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.DictionaryEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a directory holding dictionary files laid out like the {@code hyphen} resources (e.g.
+ * {@code ro/ro.dic}, or its compiled counterpart) and reloads the dictionaries whose files change.
+ * <p>
+ * Changes are picked up by a background thread, which waits until the directory has been quiet for a moment
+ * (editors and copies write a file in several steps) and then reloads every changed dictionary once. Only
+ * dictionaries that have been loaded already are reloaded; all others read the new file when first requested.
+ */
+final class DictionaryWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryWatcher.class);
+    private static final long QUIET_MILLIS = 200;
+
+    private final Path directory;
+    private final DictionaryRegistry registry;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile boolean open = true;
+
+    DictionaryWatcher(Path directory, DictionaryRegistry registry) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.registry = registry;
+        this.watchService = this.directory.getFileSystem().newWatchService();
+        try {
+            registerTree(this.directory);
+        } catch (IOException | UncheckedIOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "hypherator-dictionary-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the dictionary at the location from the directory: its compiled counterpart if that is not older
+     * than the text file, else the text file.
+     *
+     * @return the dictionary, or {@code null} if the directory has no file for the location
+     */
+    static HyphenDict load(Path directory, String location) throws IOException {
+        Path text = directory.resolve(location);
+        Path compiled = directory.resolve(HyphenDictCompiler.compiledLocation(location));
+        if (Files.isRegularFile(compiled) && (!Files.isRegularFile(text)
+                || Files.getLastModifiedTime(compiled).compareTo(Files.getLastModifiedTime(text)) >= 0)) {
+            return HyphenDictBuilder.fromBinaryFile(compiled.toString());
+        }
+        if (Files.isRegularFile(text)) {
+            return HyphenDictBuilder.fromFile(text.toString());
+        }
+        return null;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        watchService.close();
+    }
+
+    private void run() {
+        try {
+            // dictionaries loaded before the directory was watched may have files in it already
+            Set<DictionaryEntry> changed = new LinkedHashSet<>();
+            for (DictionaryEntry entry : new LinkedHashSet<>(registry.entries().values())) {
+                if (hasFile(entry))
+                    changed.add(entry);
+            }
+            reload(changed);
+
+            while (open) {
+                changed.clear();
+                collect(watchService.take(), changed);
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                reload(changed);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Stopped watching {}", directory);
+        }
+    }
+
+    private void reload(Set<DictionaryEntry> entries) {
+        for (DictionaryEntry entry : entries) {
+            if (!open)
+                return;
+            if (registry.reload(entry))
+                logger.info("Reloaded dictionary {} from {}", entry.getLocations().get(0), directory);
+        }
+    }
+
+    private void collect(WatchKey key, Set<DictionaryEntry> changed) {
+        Path parent = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, so any file may have changed
+                for (DictionaryEntry entry : registry.entries().values()) {
+                    if (hasFile(entry))
+                        changed.add(entry);
+                }
+                continue;
+            }
+            Path path = parent.resolve((Path) event.context());
+            String relative = directory.relativize(path).toString().replace(File.separatorChar, '/');
+            boolean newDirectory = event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path);
+            if (newDirectory) {
+                try {
+                    registerTree(path);
+                } catch (IOException | UncheckedIOException e) {
+                    logger.warn("Cannot watch directory {}", path, e);
+                }
+            }
+            for (DictionaryEntry entry : registry.entries().values()) {
+                String location = entry.getLocations().get(0);
+                if (location.equals(relative) || HyphenDictCompiler.compiledLocation(location).equals(relative)
+                        || (newDirectory && location.startsWith(relative + "/"))) {
+                    changed.add(entry);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    private boolean hasFile(DictionaryEntry entry) {
+        String location = entry.getLocations().get(0);
+        return Files.isRegularFile(directory.resolve(location))
+                || Files.isRegularFile(directory.resolve(HyphenDictCompiler.compiledLocation(location)));
+    }
+
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isDirectory).forEach(path -> {
+                try {
+                    path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.sevcik.hypherator;
+
+/**
+ * Approximate frequency counter (count-min sketch with 4-bit saturating counters) used by {@link BreakCache}
+ * to decide whether a new word is worth more than the one it would evict.
+ * <p>
+ * Counters are halved once the number of recorded accesses reaches ten times the cache size, so the sketch
+ * follows changes in the word distribution instead of remembering the whole history. Updates from concurrent
+ * threads are not synchronized and may occasionally be lost; for an admission heuristic that is acceptable.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0x5bd1e995, 0x27d4eb2f, 0x165667b1};
+
+    private final byte[] counters;
+    private final int mask;
+    private final int resetThreshold;
+    private int additions = 0;
+
+    FrequencySketch(int maximumSize) {
+        int width = Integer.highestOneBit(Math.max(16, maximumSize * 2) - 1) << 1;
+        counters = new byte[DEPTH * width];
+        mask = width - 1;
+        resetThreshold = Math.max(16, maximumSize * 10);
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (mask + 1) + (rehash(hash, row) & mask);
+            if (counters[index] < MAX_COUNT)
+                counters[index]++;
+        }
+        if (++additions >= resetThreshold)
+            reset();
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row * (mask + 1) + (rehash(hash, row) & mask)]);
+        }
+        return frequency;
+    }
+
+    private synchronized void reset() {
+        if (additions < resetThreshold)
+            return;
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = (byte) (counters[i] >>> 1);
+        }
+        additions = 0;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int rehash(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return h ^ (h >>> 15);
+    }
+}
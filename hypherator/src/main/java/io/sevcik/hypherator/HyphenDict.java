@@ -1,49 +1,143 @@
 package io.sevcik.hypherator;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 
+/**
+ * One level of a compiled hyphenation dictionary.
+ * <p>
+ * Instances are immutable once built by {@link HyphenDictBuilder} (or read by {@link HyphenDictBinary}),
+ * apart from the volatile flag marking a dictionary replaced by a reload, so a dictionary can be shared by
+ * any number of threads without synchronization.
+ */
  class HyphenDict {
-    protected Integer leftHyphenMin = 0;
-    protected Integer rightHyphenMin = 0;
-    protected Integer leftCompoundMin = 0;
-    protected Integer rightCompoundMin = 0;
-
-    protected Map<String, Rule> rules = new HashMap<String, Rule>();
-    protected HyphenDict nextLevel = null;
-    protected List<String> noHyphens = new ArrayList<>();
-    protected String hyphen;
-
-    protected void insertRule(Rule newRule) {
-        var key = newRule.match;
-        if (rules.containsKey(key)) {
-            var existingRule = rules.get(key);
-            for (var newBreakRule : newRule.breakRules.entrySet()) {
-                var existingBreakRule = existingRule.getBreakRules().get(newBreakRule.getKey());
-                if (existingBreakRule != null) {
-                    if (!existingBreakRule.equals(newBreakRule.getValue())) {
-                        // in such a case, which one has higher priority?
-                        var oldPriority = existingBreakRule.getValue();
-                        var newPriority = newBreakRule.getValue().getValue();
-                        if (newPriority > oldPriority) {
-                            existingRule.breakRules.put(newBreakRule.getKey(), newBreakRule.getValue());
-                        }
-                    }
-                } else {
-                    existingRule.breakRules.put(newBreakRule.getKey(), newBreakRule.getValue());
-                }
-            }
-        } else {
-            rules.put(key, newRule);
+    protected final int leftHyphenMin;
+    protected final int rightHyphenMin;
+    protected final int leftCompoundMin;
+    protected final int rightCompoundMin;
+
+    protected final HyphenDict nextLevel;
+    protected final List<String> noHyphens;
+    protected final String hyphen;
+    protected final PatternTrie trie;
+    // NOHYPHEN strings, matched against the word in the same pass as the patterns
+    protected final PatternTrie noHyphenTrie;
+    // an empty NOHYPHEN string occurs everywhere and so suppresses all breaks
+    protected final boolean noHyphenEverywhere;
+    // additions of a HyphenationOverlay: patterns of the innermost level, exceptions of the outermost one
+    protected final PatternTrie overlayTrie;
+    protected final Map<String, int[]> exceptions;
+    // set by the registry once a reload has replaced the dictionary, which then gets no new per-dictionary state
+    volatile boolean retired = false;
+
+    HyphenDict(int leftHyphenMin, int rightHyphenMin, int leftCompoundMin, int rightCompoundMin,
+               PatternTrie trie, List<String> noHyphens, HyphenDict nextLevel, String hyphen) {
+        this.leftHyphenMin = leftHyphenMin;
+        this.rightHyphenMin = rightHyphenMin;
+        this.leftCompoundMin = leftCompoundMin;
+        this.rightCompoundMin = rightCompoundMin;
+        this.trie = trie;
+        this.noHyphens = List.copyOf(noHyphens);
+        this.noHyphenTrie = compileNoHyphens(this.noHyphens);
+        this.noHyphenEverywhere = this.noHyphens.contains("");
+        this.nextLevel = nextLevel;
+        this.hyphen = hyphen;
+        this.overlayTrie = null;
+        this.exceptions = null;
+    }
+
+    /**
+     * Copies the level, sharing all its compiled data, with the given next level, hyphen and overlay additions.
+     */
+    private HyphenDict(HyphenDict level, HyphenDict nextLevel, String hyphen, PatternTrie overlayTrie, Map<String, int[]> exceptions) {
+        this.leftHyphenMin = level.leftHyphenMin;
+        this.rightHyphenMin = level.rightHyphenMin;
+        this.leftCompoundMin = level.leftCompoundMin;
+        this.rightCompoundMin = level.rightCompoundMin;
+        this.trie = level.trie;
+        this.noHyphens = level.noHyphens;
+        this.noHyphenTrie = level.noHyphenTrie;
+        this.noHyphenEverywhere = level.noHyphenEverywhere;
+        this.nextLevel = nextLevel;
+        this.hyphen = hyphen;
+        this.overlayTrie = overlayTrie;
+        this.exceptions = exceptions;
+    }
+
+    /**
+     * Returns a dictionary sharing all levels with this one, but using the given hyphen sign.
+     */
+    protected HyphenDict withHyphen(String hyphen) {
+        return new HyphenDict(this, nextLevel, hyphen, overlayTrie, exceptions);
+    }
+
+    /**
+     * Returns a dictionary with the patterns and exceptions of the overlay added to those of this one.
+     * Only the level objects are copied; the patterns of this dictionary are shared. An overlay applied to
+     * this dictionary before is replaced.
+     */
+    HyphenDict withOverlay(HyphenationOverlay overlay) {
+        return withOverlay(overlay, true);
+    }
+
+    private HyphenDict withOverlay(HyphenationOverlay overlay, boolean outermost) {
+        HyphenDict next = nextLevel != null ? nextLevel.withOverlay(overlay, false) : null;
+        return new HyphenDict(this, next, hyphen, nextLevel == null ? overlay.trie : null, outermost ? overlay.exceptionBreaks : null);
+    }
+
+    /**
+     * Compiles the NOHYPHEN strings into a trie whose patterns carry a break value right before and right
+     * after the string; those are the positions where the string forbids a break.
+     */
+    private static PatternTrie compileNoHyphens(List<String> noHyphens) {
+        Map<String, Rule> rules = new HashMap<>();
+        for (String noHyphen : noHyphens) {
+            if (noHyphen.isEmpty())
+                continue;
+            Rule rule = new Rule().setMatch(noHyphen);
+            rule.setBreakRule(0, BreakRule.of(1));
+            rule.setBreakRule(noHyphen.length(), BreakRule.of(1));
+            rules.put(noHyphen, rule);
         }
+        return PatternTrie.build(rules);
     }
 
-    protected void insertNoHyphen(String noHyphen) {
-        noHyphens.add(noHyphen);
+    /**
+     * Returns the number of patterns of this and all nested levels.
+     */
+    int patternCount() {
+        int overlayCount = overlayTrie != null ? overlayTrie.patternCount() : 0;
+        return trie.patternCount() + overlayCount + (nextLevel != null ? nextLevel.patternCount() : 0);
     }
 
+    /**
+     * Returns an estimate of the heap taken by this and all nested levels, in bytes. Break rules shared
+     * with other dictionaries are not counted.
+     */
+    long footprint() {
+        long footprint = 64 + trie.footprint() + noHyphenTrie.footprint();
+        for (String noHyphen : noHyphens) {
+            footprint += 8 + 40 + 2L * noHyphen.length();
+        }
+        if (overlayTrie != null)
+            footprint += overlayTrie.footprint();
+        if (exceptions != null) {
+            for (Map.Entry<String, int[]> exception : exceptions.entrySet()) {
+                footprint += 32 + 40 + 2L * exception.getKey().length() + 16 + 4L * exception.getValue().length;
+            }
+        }
+        return footprint + (nextLevel != null ? nextLevel.footprint() : 0);
+    }
+
+    /**
+     * A pattern while the dictionary is being built; not retained once the patterns are compiled into the trie.
+     */
     public static class Rule {
+        private static final BreakRule[] NO_BREAK_RULES = new BreakRule[0];
+
         String match;
-        Map<Integer, BreakRule> breakRules = new HashMap<Integer, BreakRule>();
+        // indexed by the number of pattern characters before the break, null where the pattern has no digit
+        BreakRule[] breakRules = NO_BREAK_RULES;
 
         public String getMatch() {
             return match;
@@ -54,51 +148,119 @@ import java.util.*;
             return this;
         }
 
-        public Map<Integer, BreakRule> getBreakRules() {
-            return breakRules;
+        /**
+         * Returns the break rule at the given offset of the pattern, or {@code null} if there is none.
+         */
+        public BreakRule getBreakRule(int offset) {
+            return offset >= 0 && offset < breakRules.length ? breakRules[offset] : null;
+        }
+
+        public void setBreakRule(int offset, BreakRule breakRule) {
+            if (offset >= breakRules.length)
+                breakRules = Arrays.copyOf(breakRules, offset + 1);
+            breakRules[offset] = breakRule;
+        }
+
+        /**
+         * Number of break rules of the pattern.
+         */
+        public int breakRuleCount() {
+            int count = 0;
+            for (BreakRule breakRule : breakRules) {
+                if (breakRule != null)
+                    count++;
+            }
+            return count;
         }
     }
 
+    /**
+     * A break value of a pattern, with its non-standard replacement if any. Rules are immutable, so
+     * {@link #of(int)} and {@link #of(int, String, int, int)} hand out canonical instances shared by all dictionaries.
+     */
     public static class BreakRule {
-        int value;
-        String replacement = null;
-        int replacementIndex = 0;
-        int replacementCount = 0;
+        private static final BreakRule[] PLAIN_RULES = new BreakRule[10];
+        // canonical rules with a replacement by their key, held weakly so that rules no longer used by any
+        // dictionary (reloaded, or from dropped overlays) are collected; guarded by itself
+        private static final Map<String, WeakReference<BreakRule>> REPLACEMENT_RULES = new WeakHashMap<>();
+        static {
+            for (int i = 0; i < PLAIN_RULES.length; i++) {
+                PLAIN_RULES[i] = new BreakRule(i);
+            }
+        }
 
-        public int getValue() {
-            return value;
+        final int value;
+        final String replacement;
+        final int replacementIndex;
+        final int replacementCount;
+        // the replacement split at its '=' once, instead of on every use; left is null if there is no '='
+        final String replacementLeft;
+        final String replacementRight;
+        // the key of a canonical rule, referenced by the rule so that its entry lives as long as the rule
+        private String key;
+
+        public BreakRule(int value) {
+            this(value, null, 0, 0);
         }
 
-        public BreakRule setValue(int value) {
+        public BreakRule(int value, String replacement, int replacementIndex, int replacementCount) {
             this.value = value;
-            return this;
+            this.replacement = replacement;
+            this.replacementIndex = replacementIndex;
+            this.replacementCount = replacementCount;
+            int separator = replacement != null ? replacement.indexOf('=') : -1;
+            this.replacementLeft = separator >= 0 ? replacement.substring(0, separator) : null;
+            this.replacementRight = replacement != null ? replacement.substring(separator + 1) : null;
         }
 
-        public String getReplacement() {
-            return replacement;
+        /**
+         * Returns a shared rule of the given value without replacement.
+         */
+        static BreakRule of(int value) {
+            return value >= 0 && value < PLAIN_RULES.length ? PLAIN_RULES[value] : new BreakRule(value);
         }
 
-        public BreakRule setReplacement(String replacement) {
-            this.replacement = replacement;
-            return this;
+        /**
+         * Returns a shared rule of the given value and replacement; equal replacements of all dictionaries
+         * share one rule and its strings.
+         */
+        static BreakRule of(int value, String replacement, int replacementIndex, int replacementCount) {
+            if (replacement == null)
+                return of(value);
+            String key = value + "," + replacementIndex + "," + replacementCount + "," + replacement;
+            synchronized (REPLACEMENT_RULES) {
+                WeakReference<BreakRule> canonical = REPLACEMENT_RULES.get(key);
+                BreakRule rule = canonical != null ? canonical.get() : null;
+                if (rule == null) {
+                    rule = new BreakRule(value, replacement, replacementIndex, replacementCount);
+                    rule.key = key;
+                    REPLACEMENT_RULES.put(key, new WeakReference<>(rule));
+                }
+                return rule;
+            }
         }
 
-        public int getReplacementIndex() {
-            return replacementIndex;
+        public int getValue() {
+            return value;
         }
 
-        public BreakRule setReplacementIndex(int replacementIndex) {
-            this.replacementIndex = replacementIndex;
-            return this;
+        public String getReplacement() {
+            return replacement;
+        }
+
+        public int getReplacementIndex() {
+            return replacementIndex;
         }
 
         public int getReplacementCount() {
             return replacementCount;
         }
 
-        public BreakRule setReplacementCount(int replCount) {
-            this.replacementCount = replCount;
-            return this;
+        /**
+         * Returns the rule of this value carrying the given non-standard replacement.
+         */
+        public BreakRule withReplacement(String replacement, int replacementIndex, int replacementCount) {
+            return of(value, replacement, replacementIndex, replacementCount);
         }
 
         @Override
@@ -0,0 +1,180 @@
+package io.sevcik.hypherator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the precompiled (binary) form of a {@link HyphenDict}.
+ * <p>
+ * The format stores the compiled {@link PatternTrie} of every level as flat arrays, so loading a dictionary
+ * is a handful of bulk copies from the buffer instead of parsing and inserting every pattern. All values are
+ * big-endian:
+ * <pre>
+ * int    MAGIC ("HYPB")
+ * int    VERSION
+ * int    number of levels
+ * per level:
+ *   int  leftHyphenMin, rightHyphenMin, leftCompoundMin, rightCompoundMin
+ *   int  number of NOHYPHEN strings, followed by the strings
+ *   int  nodeCount, edgeCount, outputCount, ruleCount, maxPatternLength
+ *   int[nodeCount + 1] edge starts, char[edgeCount] edge chars, int[edgeCount] edge targets
+ *   int[nodeCount + 1] output starts, int[outputCount] output offsets, int[outputCount] output rule ids
+ *   per rule: int value, string replacement, int replacementIndex, int replacementCount
+ * </pre>
+ * Strings are written as an int length (-1 for {@code null}) followed by their chars.
+ */
+class HyphenDictBinary {
+    static final int MAGIC = 0x48595042;
+    static final int VERSION = 1;
+
+    private HyphenDictBinary() {
+    }
+
+    static void write(HyphenDict dict, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        List<HyphenDict> levels = new ArrayList<>();
+        for (HyphenDict level = dict; level != null; level = level.nextLevel) {
+            levels.add(level);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(levels.size());
+        for (HyphenDict level : levels) {
+            out.writeInt(level.leftHyphenMin);
+            out.writeInt(level.rightHyphenMin);
+            out.writeInt(level.leftCompoundMin);
+            out.writeInt(level.rightCompoundMin);
+            out.writeInt(level.noHyphens.size());
+            for (String noHyphen : level.noHyphens) {
+                writeString(out, noHyphen);
+            }
+
+            PatternTrie trie = level.trie;
+            out.writeInt(trie.nodeCount());
+            out.writeInt(trie.edgeCount());
+            out.writeInt(trie.outputCount());
+            out.writeInt(trie.breakRules().length);
+            out.writeInt(trie.maxPatternLength());
+            writeInts(out, trie.edgeStarts());
+            for (char c : trie.edgeChars()) {
+                out.writeChar(c);
+            }
+            writeInts(out, trie.edgeTargets());
+            writeInts(out, trie.outputStarts());
+            writeInts(out, trie.outputOffsets());
+            writeInts(out, trie.outputRuleIds());
+            for (HyphenDict.BreakRule breakRule : trie.breakRules()) {
+                out.writeInt(breakRule.getValue());
+                writeString(out, breakRule.getReplacement());
+                out.writeInt(breakRule.getReplacementIndex());
+                out.writeInt(breakRule.getReplacementCount());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a dictionary from the buffer, starting at its current position.
+     *
+     * @throws IOException if the buffer does not hold a dictionary of the supported version
+     */
+    static HyphenDict read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a compiled hyphenation dictionary");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported compiled dictionary version " + version + ", expected " + VERSION);
+
+            int levelCount = buffer.getInt();
+            int[][] settings = new int[levelCount][];
+            List<List<String>> noHyphens = new ArrayList<>();
+            PatternTrie[] tries = new PatternTrie[levelCount];
+            for (int i = 0; i < levelCount; i++) {
+                settings[i] = readInts(buffer, 4);
+                int noHyphenCount = buffer.getInt();
+                List<String> levelNoHyphens = new ArrayList<>();
+                for (int j = 0; j < noHyphenCount; j++) {
+                    levelNoHyphens.add(readString(buffer));
+                }
+                noHyphens.add(levelNoHyphens);
+                tries[i] = readTrie(buffer);
+            }
+
+            // levels are immutable, so they have to be linked from the innermost one
+            HyphenDict dict = null;
+            for (int i = levelCount - 1; i >= 0; i--) {
+                dict = new HyphenDict(settings[i][0], settings[i][1], settings[i][2], settings[i][3], tries[i], noHyphens.get(i), dict, null);
+            }
+            return dict;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated compiled hyphenation dictionary", e);
+        }
+    }
+
+    private static PatternTrie readTrie(ByteBuffer buffer) {
+        int nodeCount = buffer.getInt();
+        int edgeCount = buffer.getInt();
+        int outputCount = buffer.getInt();
+        int ruleCount = buffer.getInt();
+        int maxPatternLength = buffer.getInt();
+
+        int[] edgeStart = readInts(buffer, nodeCount + 1);
+        char[] edgeChars = new char[edgeCount];
+        buffer.asCharBuffer().get(edgeChars);
+        buffer.position(buffer.position() + edgeCount * Character.BYTES);
+        int[] edgeTargets = readInts(buffer, edgeCount);
+        int[] outputStart = readInts(buffer, nodeCount + 1);
+        int[] outputOffsets = readInts(buffer, outputCount);
+        int[] outputRuleIds = readInts(buffer, outputCount);
+
+        HyphenDict.BreakRule[] breakRules = new HyphenDict.BreakRule[ruleCount];
+        for (int i = 0; i < ruleCount; i++) {
+            int value = buffer.getInt();
+            String replacement = readString(buffer);
+            int replacementIndex = buffer.getInt();
+            int replacementCount = buffer.getInt();
+            breakRules[i] = HyphenDict.BreakRule.of(value, replacement, replacementIndex, replacementCount);
+        }
+        return new PatternTrie(edgeStart, edgeChars, edgeTargets, outputStart, outputOffsets, outputRuleIds, breakRules, maxPatternLength);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        char[] chars = new char[length];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + length * Character.BYTES);
+        return new String(chars);
+    }
+}
@@ -4,12 +4,18 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -31,12 +37,33 @@ class HyphenDictBuilder {
         }
     }
 
+    /**
+     * Loads a dictionary precompiled by {@link HyphenDictCompiler}. The file is memory mapped and the
+     * pattern arrays are copied out of the mapping in bulk.
+     */
+    public static HyphenDict fromBinaryFile(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return HyphenDictBinary.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            logger.error("Error reading compiled dictionary: " + filename, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a dictionary precompiled by {@link HyphenDictCompiler} from a stream (e.g. a classpath resource),
+     * reading it in a single bulk read.
+     */
+    public static HyphenDict fromBinaryStream(InputStream inputStream) throws IOException {
+        return HyphenDictBinary.read(ByteBuffer.wrap(inputStream.readAllBytes()));
+    }
+
     public static HyphenDict fromInputStream(InputStream inputStream) throws IOException {
         logger.info("Loading hyphenation dictionary from input stream");
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))
         ) {
-            HyphenDict dict = new HyphenDict();
-            HyphenDict workingDict = dict;
+            Level dict = new Level();
+            Level workingDict = dict;
             int level = 0;
             String line;
             line = reader.readLine();
@@ -74,7 +101,7 @@ class HyphenDictBuilder {
                 }
                 if (line.startsWith("NEXTLEVEL")) {
                     level++;
-                    workingDict.nextLevel = new HyphenDict();
+                    workingDict.nextLevel = new Level();
                     workingDict = workingDict.nextLevel;
                     continue;
                 }
@@ -86,7 +113,7 @@ class HyphenDictBuilder {
             }
 
             if (level == 0) {
-                HyphenDict baseLevel = new HyphenDict();
+                Level baseLevel = new Level();
                 baseLevel.leftHyphenMin = dict.leftHyphenMin;
                 baseLevel.rightHyphenMin = dict.rightHyphenMin;
                 baseLevel.leftCompoundMin = dict.leftCompoundMin > 0 ? dict.leftCompoundMin : dict.leftHyphenMin > 0 ? dict.leftHyphenMin : 3;
@@ -103,18 +130,14 @@ class HyphenDictBuilder {
                 baseLevel.nextLevel = dict;
                 dict = baseLevel;
             }
-            return dict;
+            return dict.build(null);
         } catch (IOException e) {
             logger.error("Error reading input stream", e);
             throw e;
         }
     }
 
-    public static void addHyphen(HyphenDict dict, String hyphen) {
-        dict.hyphen = hyphen;
-    }
-
-    public static void addNormalRule(HyphenDict dict, String line) {
+    static void addNormalRule(Level dict, String line) {
         logger.debug("Adding rule {}", line);
         if (".mas5száz8s3zok1ni/sz=3,1,1,14".equals(line)) {
             logger.info("Replacing broken rule: {}", line);
@@ -135,7 +158,7 @@ class HyphenDictBuilder {
         for (int i = 0; i < line.length(); i++) {
             if (Character.isDigit(line.charAt(i))) {
                 int value = Character.getNumericValue(line.charAt(i));
-                rule.getBreakRules().put(word.length(), new HyphenDict.BreakRule().setValue(value));
+                rule.setBreakRule(word.length(), HyphenDict.BreakRule.of(value));
             } else {
                 word.append(line.charAt(i));
             }
@@ -152,32 +175,30 @@ class HyphenDictBuilder {
                 var replacementCount = Integer.parseInt(replData[2]);
 
                 HyphenDict.BreakRule relevantBreak = null;
+                int relevantPosition = 0;
                 if (rule.getMatch().startsWith("."))
                     replacementIndex++;
 
                 // now search if there is break within the given replacement region
                 for (int i = replacementIndex-1; i < replacementIndex + replacementCount; i++) {
-                    var potentialBreak = rule.getBreakRules().get(i);
+                    var potentialBreak = rule.getBreakRule(i);
                     if (potentialBreak == null)
                         continue;
                     if (relevantBreak != null)
                         throw new RuntimeException("CHECKPOINT - Multiple break rules within the same replacement region");
                     relevantBreak = potentialBreak;
+                    relevantPosition = i;
                     replacementIndex = replacementIndex - i;
                 }
 
-                relevantBreak.setReplacement(replacement);
-                relevantBreak.setReplacementIndex(replacementIndex);
-                relevantBreak.setReplacementCount(replacementCount);
+                rule.setBreakRule(relevantPosition, relevantBreak.withReplacement(replacement, replacementIndex, replacementCount));
             } else if (replData.length == 1) {
                 var replacement = replData[0];
                 var replacementIndex = 1;
                 var replacementCount = rule.getMatch().length();
 
-                var relevantBreak = rule.getBreakRules().get(replacementIndex);
-                relevantBreak.setReplacement(replacement);
-                relevantBreak.setReplacementIndex(replacementIndex);
-                relevantBreak.setReplacementCount(replacementCount);
+                var relevantBreak = rule.getBreakRule(replacementIndex);
+                rule.setBreakRule(replacementIndex, relevantBreak.withReplacement(replacement, replacementIndex, replacementCount));
             } else {
                 throw new RuntimeException("CHECKPOINT - WE DO HANDLE replacements without indices and counts");
             }
@@ -187,4 +208,57 @@ class HyphenDictBuilder {
     }
 
 
+    /**
+     * Mutable state of one dictionary level while its file is being read.
+     */
+    static class Level {
+        int leftHyphenMin = 0;
+        int rightHyphenMin = 0;
+        int leftCompoundMin = 0;
+        int rightCompoundMin = 0;
+        final Map<String, HyphenDict.Rule> rules = new HashMap<>();
+        final List<String> noHyphens = new ArrayList<>();
+        Level nextLevel = null;
+
+        void insertRule(HyphenDict.Rule newRule) {
+            var key = newRule.match;
+            if (rules.containsKey(key)) {
+                var existingRule = rules.get(key);
+                for (int offset = 0; offset < newRule.breakRules.length; offset++) {
+                    var newBreakRule = newRule.breakRules[offset];
+                    if (newBreakRule == null)
+                        continue;
+                    var existingBreakRule = existingRule.getBreakRule(offset);
+                    if (existingBreakRule != null) {
+                        if (!existingBreakRule.equals(newBreakRule)) {
+                            // in such a case, which one has higher priority?
+                            var oldPriority = existingBreakRule.getValue();
+                            var newPriority = newBreakRule.getValue();
+                            if (newPriority > oldPriority) {
+                                existingRule.setBreakRule(offset, newBreakRule);
+                            }
+                        }
+                    } else {
+                        existingRule.setBreakRule(offset, newBreakRule);
+                    }
+                }
+            } else {
+                rules.put(key, newRule);
+            }
+        }
+
+        void insertNoHyphen(String noHyphen) {
+            noHyphens.add(noHyphen);
+        }
+
+        /**
+         * Compiles this level and all following levels into immutable {@link HyphenDict}s.
+         */
+        HyphenDict build(String hyphen) {
+            HyphenDict next = nextLevel != null ? nextLevel.build(null) : null;
+            return new HyphenDict(leftHyphenMin, rightHyphenMin, leftCompoundMin, rightCompoundMin,
+                    PatternTrie.build(rules), noHyphens, next, hyphen);
+        }
+    }
+
 }
@@ -0,0 +1,88 @@
+package io.sevcik.hypherator;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sevcik.hypherator.dto.DictionaryEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compiles Hunspell-style {@code .dic} hyphenation files into the versioned binary format that
+ * {@link Hypherator} loads in preference to the text files.
+ * <p>
+ * The binary form holds the already compiled pattern tries, so loading it skips all text parsing.
+ * A compiled file is always stored next to its source as {@code <name>.hyb}. The bundled dictionaries are
+ * compiled by {@link #main(String[])} when the module is built, after its classes are compiled.
+ */
+public final class HyphenDictCompiler {
+    /**
+     * File extension of compiled dictionaries.
+     */
+    public static final String COMPILED_EXTENSION = ".hyb";
+
+    private HyphenDictCompiler() {
+    }
+
+    /**
+     * Compiles the dictionaries listed in the {@code all.json} of each given dictionary directory.
+     * A directory without one, e.g. before hypherator-tools has generated the dictionaries, is skipped.
+     */
+    public static void main(String[] args) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (String directory : args) {
+            Path list = Path.of(directory, "all.json");
+            if (!Files.exists(list)) {
+                System.out.println("No dictionaries to compile in " + directory);
+                continue;
+            }
+            List<DictionaryEntry> entries = objectMapper.readValue(list.toFile(), new TypeReference<List<DictionaryEntry>>() {});
+            for (DictionaryEntry entry : entries) {
+                for (String location : entry.getLocations()) {
+                    Path source = Path.of(directory, location);
+                    System.out.println("Compiled " + source + " to " + compile(source));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the dictionary from {@code source} and writes its compiled form to {@code target}.
+     *
+     * @param source the UTF-8 {@code .dic} data
+     * @param target the stream receiving the compiled dictionary
+     * @throws IOException if the dictionary cannot be read or written
+     */
+    public static void compile(InputStream source, OutputStream target) throws IOException {
+        HyphenDictBinary.write(HyphenDictBuilder.fromInputStream(source), target);
+    }
+
+    /**
+     * Compiles the given {@code .dic} file into a {@code .hyb} file next to it.
+     *
+     * @param source path of the {@code .dic} file
+     * @return path of the written compiled dictionary
+     * @throws IOException if the dictionary cannot be read or written
+     */
+    public static Path compile(Path source) throws IOException {
+        Path target = source.resolveSibling(compiledLocation(source.getFileName().toString()));
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target)) {
+            compile(in, out);
+        }
+        return target;
+    }
+
+    /**
+     * Returns the location of the compiled counterpart of a {@code .dic} location.
+     */
+    public static String compiledLocation(String location) {
+        if (location.endsWith(".dic"))
+            return location.substring(0, location.length() - ".dic".length()) + COMPILED_EXTENSION;
+        return location + COMPILED_EXTENSION;
+    }
+}
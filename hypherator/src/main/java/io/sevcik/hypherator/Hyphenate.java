@@ -1,5 +1,6 @@
 package io.sevcik.hypherator;
 
+import io.sevcik.hypherator.dto.HyphenationBatch;
 import io.sevcik.hypherator.dto.Pair;
 import io.sevcik.hypherator.dto.PotentialBreak;
 
@@ -26,6 +27,38 @@ public interface Hyphenate {
      */
     List<PotentialBreak> hyphenate(HyphenDict dict, String text);
 
+    /**
+     * Same as {@link #hyphenate(HyphenDict, String)}, but reads the word directly from a {@link CharSequence}
+     * (e.g. a {@link StringBuilder} or a {@link java.nio.CharBuffer}), so no {@link String} has to be created for it.<br>
+     * <b>Prefer using {@link HyphenationIterator} to process hyphenation points.</b>
+     *
+     * @param dict the hyphenation dictionary
+     * @param text the input word or text
+     * @return a list of hyphenation breaks (opaque handles)
+     */
+    List<PotentialBreak> hyphenate(HyphenDict dict, CharSequence text);
+
+    /**
+     * Same as {@link #hyphenate(HyphenDict, CharSequence)}, but returns the breaks in the compact
+     * {@link PackedBreaks} form; {@link PotentialBreak} objects are only created if asked for.
+     *
+     * @param dict the hyphenation dictionary
+     * @param text the input word or text
+     * @return the hyphenation breaks
+     */
+    PackedBreaks hyphenatePacked(HyphenDict dict, CharSequence text);
+
+    /**
+     * Hyphenates all the words with the same dictionary and returns their breaks in columnar form.
+     * Meant for callers laying out whole pages: the breaks of thousands of words are collected into a few
+     * flat arrays, without creating a list or a {@link PotentialBreak} per word.
+     *
+     * @param dict the hyphenation dictionary
+     * @param words the words to hyphenate
+     * @return the breaks of all words, in the order of the words
+     */
+    HyphenationBatch hyphenateAll(HyphenDict dict, List<? extends CharSequence> words);
+
     /**
      * Applies a given {@link PotentialBreak} to the input text, returning the result as a pair (before and after the hyphenation point).<br>
      * <b>Prefer using {@link HyphenationIterator} to process and apply hyphenation points.</b>
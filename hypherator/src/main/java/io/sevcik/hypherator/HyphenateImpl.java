@@ -1,34 +1,75 @@
 package io.sevcik.hypherator;
 
+import io.sevcik.hypherator.dto.HyphenationBatch;
 import io.sevcik.hypherator.dto.Pair;
 import io.sevcik.hypherator.dto.PotentialBreak;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
+/**
+ * Default implementation of {@link Hyphenate}.
+ * <p>
+ * Instances keep reusable word buffers and break arrays between calls and are therefore not thread-safe;
+ * all {@link Hyphenator}s share one instance per thread.
+ */
 class HyphenateImpl implements Hyphenate {
     public static final int DEFAULT_HYPHEN_MIN = 2;
+    // positions matched by the first pass of a bounded break query
+    static final int QUERY_WINDOW = 8;
+
+    // one scratch per compound nesting level, reused for every word
+    private final List<Scratch> scratches = new ArrayList<>();
+    // breaks of the last word, in order of position
+    private int[] resultPositions = new int[32];
+    private int[] resultPriorities = new int[32];
+    private HyphenDict.BreakRule[] resultRules = new HyphenDict.BreakRule[32];
+    // the last word given as UTF-8 bytes
+    private final Utf8Word utf8Word = new Utf8Word();
+
+    private HyphenationMetrics metrics;
+    // work done for the current word or query, recorded into the metrics once it is done
+    private int probes = 0;
+    private int recursions = 0;
+
+    HyphenateImpl() {
+        this(null);
+    }
+
+    HyphenateImpl(HyphenationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the metrics the following words and queries are recorded into, {@code null} for none.
+     *
+     * @return this instance
+     */
+    HyphenateImpl withMetrics(HyphenationMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
 
     @Override
     public Pair<String, String> applyBreak(String text, PotentialBreak breakRule) {
         PotentialBreakImpl breakRuleImpl = (PotentialBreakImpl) breakRule;
-        if (breakRuleImpl.breakRule().replacement != null) {
-            var replacementStart = breakRuleImpl.position() + breakRuleImpl.breakRule().replacementIndex - 1; // because replacement index by spec starts at 1
-            var substituedText =
-                    text.substring(0, replacementStart) + // position points AFTER the character in question, so we have to cut one before
-                            breakRuleImpl.breakRule().replacement +
-                            text.substring(replacementStart + breakRuleImpl.breakRule().replacementCount);
-
-            return new Pair<>(
-                    substituedText.substring(0, substituedText.indexOf("=")),
-                    substituedText.substring(substituedText.indexOf("=") + 1)
-            );
-        } else {
+        HyphenDict.BreakRule rule = breakRuleImpl.breakRule();
+        if (rule.replacement == null) {
             return new Pair<>(text.substring(0, breakRuleImpl.position()), text.substring(breakRuleImpl.position()));
         }
+        var replacementStart = breakRuleImpl.position() + rule.replacementIndex - 1; // because replacement index by spec starts at 1
+        String left = text.substring(0, replacementStart);
+        String right = text.substring(replacementStart + rule.replacementCount);
+        // the split is at the '=' of the replacement; one without '=' is kept whole on the left
+        if (rule.replacementLeft == null) {
+            return new Pair<>(left + rule.replacement, right);
+        }
+        return new Pair<>(left + rule.replacementLeft, rule.replacementRight + right);
     }
 
     @Override
@@ -49,170 +90,491 @@ class HyphenateImpl implements Hyphenate {
 
     @Override
     public List<PotentialBreak> hyphenate(HyphenDict dict, String text) {
-        List<PotentialBreak> possibleBreaks = applyStandardRules(dict, text, true, true);
-        applyNohyphenRules(dict, text, possibleBreaks);
-        // apply rules for not breaking too close to the word ends
-        cleanBreaksAtEdges(dict, text, possibleBreaks);
-        return possibleBreaks;
+        return hyphenate(dict, (CharSequence) text);
     }
 
-    private void cleanBreaksAtEdges(HyphenDict dict, String text, List<PotentialBreak> possibleBreaks) {
-        int digitsFromLeft = 0;
-        int digitsFromRight = 0;
+    @Override
+    public List<PotentialBreak> hyphenate(HyphenDict dict, CharSequence text) {
+        int count = collectBreaks(dict, text);
+        List<PotentialBreak> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new PotentialBreakImpl(resultPositions[i], resultPriorities[i], resultRules[i]));
+        }
+        return result;
+    }
 
-        while (digitsFromLeft < text.length() && text.charAt(digitsFromLeft) >= '0' && text.charAt(digitsFromLeft) <= '9')
-            digitsFromLeft++;
-        while (digitsFromRight < text.length() && text.charAt(text.length() - 1 - digitsFromRight) >= '0' && text.charAt(text.length() - 1 - digitsFromRight) <= '9')
-            digitsFromRight++;
+    @Override
+    public PackedBreaks hyphenatePacked(HyphenDict dict, CharSequence text) {
+        int count = collectBreaks(dict, text);
+        return PackedBreaks.of(count, resultPositions, resultPriorities, resultRules);
+    }
 
-        int leftHyphenMin = dict.leftHyphenMin > 0 ? dict.leftHyphenMin : DEFAULT_HYPHEN_MIN;
-        int rightHyphenMin = dict.rightHyphenMin > 0 ? dict.rightHyphenMin : DEFAULT_HYPHEN_MIN;
+    /**
+     * Hyphenates the word given as the UTF-8 bytes {@code buffer[from, to)}, decoded into a reusable buffer.
+     */
+    Utf8Breaks hyphenateUtf8(HyphenDict dict, ByteBuffer buffer, int from, int to) {
+        utf8Word.load(buffer, from, to);
+        int count = collectBreaks(dict, utf8Word);
+        PackedBreaks breaks = PackedBreaks.of(count, resultPositions, resultPriorities, resultRules);
+        if (utf8Word.isAscii())
+            return new Utf8Breaks(breaks, null);
+        int[] byteOffsets = new int[count];
+        for (int k = 0; k < count; k++) {
+            byteOffsets[k] = utf8Word.byteOffset(resultPositions[k]);
+        }
+        return new Utf8Breaks(breaks, byteOffsets);
+    }
 
-        int ligaturesFromLeft = 0;
-        int ligaturesFromRight = 0;
+    @Override
+    public HyphenationBatch hyphenateAll(HyphenDict dict, List<? extends CharSequence> words) {
+        int[] offsets = new int[words.size() + 1];
+        int[] positions = new int[Math.max(16, words.size() * 2)];
+        int[] priorities = new int[positions.length];
+        int total = 0;
+        for (int w = 0; w < words.size(); w++) {
+            offsets[w] = total;
+            int count = collectBreaks(dict, words.get(w));
+            if (total + count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(total + count, positions.length * 2));
+                priorities = Arrays.copyOf(priorities, positions.length);
+            }
+            System.arraycopy(resultPositions, 0, positions, total, count);
+            System.arraycopy(resultPriorities, 0, priorities, total, count);
+            total += count;
+        }
+        offsets[words.size()] = total;
+        return new HyphenationBatch(offsets, Arrays.copyOf(positions, total), Arrays.copyOf(priorities, total));
+    }
 
-        for (int i = 0; i < min(leftHyphenMin, text.length()); i++) {
-            if (text.charAt(i) >= '\ufb00' && text.charAt(i) <= '\ufb06') {
-                ligaturesFromLeft++;
-                if (text.charAt(i) == '\ufb03' || text.charAt(i) == '\ufb04') {
-                    ligaturesFromLeft++;
-                }
+    /**
+     * Hyphenates the word into the reusable result arrays.
+     *
+     * @return the number of breaks found
+     */
+    private int collectBreaks(HyphenDict dict, CharSequence text) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        probes = 0;
+        recursions = 0;
+        int count = collectBreaks(dict, text, 0, text.length());
+        if (metrics != null)
+            metrics.recordWord(count, probes, recursions, System.nanoTime() - start);
+        return count;
+    }
+
+    /**
+     * Collects the breaks at positions {@code from} to {@code to} (inclusive) into the reusable result arrays.
+     * Compound levels are matched in full, as their parts decide where the word is split, but the patterns of
+     * the innermost levels are only matched where they can reach a position of the range.
+     *
+     * @return the number of breaks found
+     */
+    private int collectBreaks(HyphenDict dict, CharSequence text, int from, int to) {
+        scratch(0).word.load(text, 0, text.length());
+        if (dict.exceptions != null) {
+            WordBuffer word = scratch(0).word;
+            int[] exception = dict.exceptions.get(word.subSequence(1, word.length() - 1).toString());
+            if (exception != null)
+                return collectException(exception, from, to);
+        }
+        // a break after the i-th character is found at index i + 1 of the scratch
+        applyStandardRules(dict, 0, true, true, text, from + 1, to + 1);
+        Scratch breaks = scratch(0);
+
+        int minPosition = max(minBreakPosition(dict, text), from);
+        int maxPosition = min(maxBreakPosition(dict, text), to);
+        if (resultPositions.length < breaks.length) {
+            resultPositions = new int[breaks.length];
+            resultPriorities = new int[breaks.length];
+            resultRules = new HyphenDict.BreakRule[breaks.length];
+        }
+        if (dict.noHyphenEverywhere)
+            maxPosition = -1;
+        int count = 0;
+        for (int i = 1; i < breaks.length; i++) {
+            if (breaks.values[i] % 2 == 1 && !breaks.suppressed[i] && i - 1 >= minPosition && i - 1 <= maxPosition) {
+                resultPositions[count] = i - 1;
+                resultPriorities[count] = breaks.values[i];
+                resultRules[count] = breaks.rules[i];
+                count++;
             }
         }
+        return count;
+    }
 
-        for (int i = max(text.length() - rightHyphenMin, 0); i < text.length(); i++) {
-            if (text.charAt(i) >= '\ufb00' && text.charAt(i) <= '\ufb06') {
-                ligaturesFromRight++;
-                if (text.charAt(i) == '\ufb03' || text.charAt(i) == '\ufb04') {
-                    ligaturesFromRight++;
-                }
+    /**
+     * Collects the breaks of a whole-word exception of an overlay at positions {@code from} to {@code to}.
+     */
+    private int collectException(int[] positions, int from, int to) {
+        if (resultPositions.length < positions.length) {
+            resultPositions = new int[positions.length];
+            resultPriorities = new int[positions.length];
+            resultRules = new HyphenDict.BreakRule[positions.length];
+        }
+        int count = 0;
+        for (int position : positions) {
+            if (position >= from && position <= to) {
+                resultPositions[count] = position;
+                resultPriorities[count] = HyphenationOverlay.EXCEPTION_PRIORITY;
+                resultRules[count] = HyphenDict.BreakRule.of(HyphenationOverlay.EXCEPTION_PRIORITY);
+                count++;
             }
         }
+        return count;
+    }
 
-        int skipFromLeft = digitsFromLeft - ligaturesFromLeft;
-        int skipFromRight = digitsFromRight - ligaturesFromRight;
+    /**
+     * Returns the last break at or before the position whose priority passes the urgency, or {@code null}
+     * if there is none. First only the patterns reaching the {@value #QUERY_WINDOW} positions up to the
+     * position are matched. Every pass loads the word again and matches its compound level in full, so if
+     * there is no break in that window, the rest of the word is matched in one more pass, not window by window.
+     *
+     * @param urgency the urgency as in {@link HyphenationIterator#setUrgency(int)}
+     */
+    PotentialBreak breakBefore(HyphenDict dict, CharSequence text, int position, int urgency) {
+        probes = 0;
+        recursions = 0;
+        PotentialBreak result = null;
+        int minPosition = minBreakPosition(dict, text);
+        int to = min(position, text.length());
+        int from = max(to - QUERY_WINDOW + 1, 0);
+        if (to >= minPosition)
+            result = lastBreak(collectBreaks(dict, text, from, to), urgency);
+        if (result == null && from > minPosition)
+            result = lastBreak(collectBreaks(dict, text, 0, from - 1), urgency);
+        if (metrics != null)
+            metrics.recordQuery(probes, recursions);
+        return result;
+    }
 
-        possibleBreaks.removeIf(
-                breakRule -> ((PotentialBreakImpl)breakRule).position() < leftHyphenMin + skipFromLeft ||
-                        ((PotentialBreakImpl)breakRule).position() > text.length() - rightHyphenMin - skipFromRight);
-    }
-
-    private void applyNohyphenRules(HyphenDict dict, String text, List<PotentialBreak> possibleBreaks) {
-        for (String noHyphen : dict.noHyphens) {
-            int index = text.indexOf(noHyphen);
-            while (index >= 0) {
-                final int start = index;
-                final int end = index + noHyphen.length();
-                possibleBreaks.removeIf(pb -> ((PotentialBreakImpl)pb).position() == start ||  ((PotentialBreakImpl)pb).position() == end);
-                index = text.indexOf(noHyphen, index + 1);
-            }
+    /**
+     * Returns the first break after the position whose priority passes the urgency, or {@code null} if there
+     * is none, matching the window after the position first and then the rest of the word.
+     *
+     * @see #breakBefore(HyphenDict, CharSequence, int, int)
+     */
+    PotentialBreak breakAfter(HyphenDict dict, CharSequence text, int position, int urgency) {
+        probes = 0;
+        recursions = 0;
+        PotentialBreak result = null;
+        int maxPosition = maxBreakPosition(dict, text);
+        int from = max(position + 1, 0);
+        int to = from + QUERY_WINDOW - 1;
+        if (from <= maxPosition)
+            result = firstBreak(collectBreaks(dict, text, from, to), urgency);
+        if (result == null && to < maxPosition)
+            result = firstBreak(collectBreaks(dict, text, to + 1, text.length()), urgency);
+        if (metrics != null)
+            metrics.recordQuery(probes, recursions);
+        return result;
+    }
+
+    /**
+     * Returns the last of the collected breaks whose priority passes the urgency, or {@code null} if there is none.
+     */
+    private PotentialBreak lastBreak(int count, int urgency) {
+        for (int k = count - 1; k >= 0; k--) {
+            if (resultPriorities[k] >= 10 - urgency)
+                return new PotentialBreakImpl(resultPositions[k], resultPriorities[k], resultRules[k]);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first of the collected breaks whose priority passes the urgency, or {@code null} if there is none.
+     */
+    private PotentialBreak firstBreak(int count, int urgency) {
+        for (int k = 0; k < count; k++) {
+            if (resultPriorities[k] >= 10 - urgency)
+                return new PotentialBreakImpl(resultPositions[k], resultPriorities[k], resultRules[k]);
         }
+        return null;
     }
 
+    private void cleanBreaksAtEdges(HyphenDict dict, CharSequence text, List<PotentialBreak> possibleBreaks) {
+        int minPosition = minBreakPosition(dict, text);
+        int maxPosition = maxBreakPosition(dict, text);
+        possibleBreaks.removeIf(
+                breakRule -> ((PotentialBreakImpl)breakRule).position() < minPosition ||
+                        ((PotentialBreakImpl)breakRule).position() > maxPosition);
+    }
 
+    /**
+     * Smallest allowed break position: not closer to the start than the left hyphen minimum,
+     * ignoring leading digits and counting ligatures as the letters they stand for.
+     */
+    private static int minBreakPosition(HyphenDict dict, CharSequence text) {
+        int leftHyphenMin = dict.leftHyphenMin > 0 ? dict.leftHyphenMin : DEFAULT_HYPHEN_MIN;
+        int digitsFromLeft = 0;
+        while (digitsFromLeft < text.length() && text.charAt(digitsFromLeft) >= '0' && text.charAt(digitsFromLeft) <= '9')
+            digitsFromLeft++;
 
-    private List<PotentialBreak> applyStandardRules(HyphenDict dict, String text, boolean isWordLeftEnd, boolean isWordRightEnd) {
-        text = "." + text.replaceAll("\\d", ".") + ".";
-        Pair<Integer, HyphenDict.BreakRule>[] potentialBreaks = new Pair[text.length()];
-        for (int i = 0; i < potentialBreaks.length; i++) {
-            potentialBreaks[i] = new Pair<>(0, null);
+        int ligaturesFromLeft = 0;
+        for (int i = 0; i < min(leftHyphenMin, text.length()); i++) {
+            ligaturesFromLeft += ligatureExtraLetters(text.charAt(i));
         }
+        return leftHyphenMin + digitsFromLeft - ligaturesFromLeft;
+    }
 
-        applyRulesFromDict(dict, text, potentialBreaks);
+    /**
+     * Largest allowed break position, the counterpart of {@link #minBreakPosition} for the end of the word.
+     */
+    private static int maxBreakPosition(HyphenDict dict, CharSequence text) {
+        int rightHyphenMin = dict.rightHyphenMin > 0 ? dict.rightHyphenMin : DEFAULT_HYPHEN_MIN;
+        int digitsFromRight = 0;
+        while (digitsFromRight < text.length() && text.charAt(text.length() - 1 - digitsFromRight) >= '0' && text.charAt(text.length() - 1 - digitsFromRight) <= '9')
+            digitsFromRight++;
 
-        if (dict.nextLevel != null) {
-            int lastBreakPosition = 1; // why 1 / -1? because of the dots added at the beginnign and end of the word
-            for (int i = 2; i <= potentialBreaks.length - 1; i++) {
-                if (i == potentialBreaks.length - 1 && lastBreakPosition == 1) {
-                    // We cannot further split this word using compound rules - the word is not compount anymore, apply nextlevel rules
-                    var newBreaks = applyStandardRules(dict.nextLevel, text.substring(1, text.length() - 1), isWordLeftEnd, isWordRightEnd);
-                    mergeBreakList(newBreaks, lastBreakPosition, potentialBreaks);
-                    applyBorderRules(potentialBreaks, dict.leftCompoundMin, dict.rightCompoundMin, isWordLeftEnd, isWordRightEnd);
-                } else if (((potentialBreaks[i].getFirst() % 2 == 1) || (i == potentialBreaks.length - 1))) {
-                    // This word was broken down, so try to apply compound rules to subparts
-                    var potentialBreak = potentialBreaks[i].getSecond();
-                    var previousBreak = potentialBreaks[lastBreakPosition].getSecond();
-                    String segment = text.substring(lastBreakPosition, i);
-                    segment = applyReplacementToSegment(segment, previousBreak, potentialBreak);
+        int ligaturesFromRight = 0;
+        for (int i = max(text.length() - rightHyphenMin, 0); i < text.length(); i++) {
+            ligaturesFromRight += ligatureExtraLetters(text.charAt(i));
+        }
+        return text.length() - rightHyphenMin - (digitsFromRight - ligaturesFromRight);
+    }
 
-                    int segmentOffsetAfterReplacement = 0;
-                    if (previousBreak != null && previousBreak.replacement != null) {
-                        String replacementRight = previousBreak.replacement.substring(previousBreak.replacement.indexOf("=") + 1);
-                        segmentOffsetAfterReplacement =
-                                (previousBreak.replacementIndex + previousBreak.replacementCount - 1) - replacementRight.length();
-                    }
+    private static int ligatureExtraLetters(char c) {
+        if (c >= '\ufb00' && c <= '\ufb06') {
+            return c == '\ufb03' || c == '\ufb04' ? 2 : 1;
+        }
+        return 0;
+    }
 
-                    var newBreaks = applyStandardRules(dict, segment, i == 1 && isWordLeftEnd, i == potentialBreaks.length - 1 && isWordRightEnd);
-                    mergeBreakList(newBreaks, lastBreakPosition + segmentOffsetAfterReplacement, potentialBreaks);
+    /**
+     * Computes the breaks of the word loaded in the word buffer of the given nesting {@code depth} into the
+     * scratch of that depth; a break after the i-th character ends up at index i + 1. Compound parts are loaded
+     * into the buffer of the next depth straight from this one, by offsets, so no substrings are created.
+     * {@code noHyphenText} is the original word, given only for the outermost level. Only the breaks at indices
+     * {@code from} to {@code to} (inclusive) are needed; compound parts entirely outside of them are skipped.
+     */
+    private void applyStandardRules(HyphenDict dict, int depth, boolean isWordLeftEnd, boolean isWordRightEnd, CharSequence noHyphenText,
+                                    int from, int to) {
+        if (depth > 0)
+            recursions++;
+        Scratch potentialBreaks = scratch(depth);
+        WordBuffer word = potentialBreaks.word;
+        potentialBreaks.reset(word.length());
+
+        if (dict.nextLevel == null) {
+            applyRulesFromDict(dict, word, potentialBreaks, noHyphenText, from, to);
+            return;
+        }
+        applyRulesFromDict(dict, word, potentialBreaks, noHyphenText, 0, potentialBreaks.length);
+
+        int lastBreakPosition = 1; // why 1 / -1? because of the dots added at the beginnign and end of the word
+        for (int i = 2; i <= potentialBreaks.length - 1; i++) {
+            if (i == potentialBreaks.length - 1 && lastBreakPosition == 1) {
+                // We cannot further split this word using compound rules - the word is not compount anymore, apply nextlevel rules
+                scratch(depth + 1).word.load(word, 1, word.length() - 1);
+                // index j of the part is merged into index j - 1 + lastBreakPosition of the word
+                applyStandardRules(dict.nextLevel, depth + 1, isWordLeftEnd, isWordRightEnd, null, from, to);
+                mergeBreaks(scratch(depth + 1), lastBreakPosition, potentialBreaks);
+                applyBorderRules(potentialBreaks, dict.leftCompoundMin, dict.rightCompoundMin, isWordLeftEnd, isWordRightEnd);
+            } else if (((potentialBreaks.values[i] % 2 == 1) || (i == potentialBreaks.length - 1))) {
+                // This word was broken down, so try to apply compound rules to subparts
+                var potentialBreak = potentialBreaks.rules[i];
+                var previousBreak = potentialBreaks.rules[lastBreakPosition];
+                boolean replaced = (previousBreak != null && previousBreak.replacement != null) || (potentialBreak != null && potentialBreak.replacement != null);
+                if (!replaced && (i <= from || lastBreakPosition > to)) {
+                    // the breaks of a plain part end up below index i, so skipping it changes nothing else
                     lastBreakPosition = i;
+                    continue;
+                }
+                WordBuffer segment = scratch(depth + 1).word;
+                if (replaced) {
+                    loadReplacedSegment(segment, word, lastBreakPosition, i, previousBreak, potentialBreak);
+                } else {
+                    segment.load(word, lastBreakPosition, i);
                 }
+
+                int segmentOffsetAfterReplacement = 0;
+                if (previousBreak != null && previousBreak.replacement != null) {
+                    segmentOffsetAfterReplacement =
+                            (previousBreak.replacementIndex + previousBreak.replacementCount - 1) - previousBreak.replacementRight.length();
+                }
+
+                int offset = lastBreakPosition + segmentOffsetAfterReplacement;
+                applyStandardRules(dict, depth + 1, i == 1 && isWordLeftEnd, i == potentialBreaks.length - 1 && isWordRightEnd, null,
+                        from + 1 - offset, to + 1 - offset);
+                mergeBreaks(scratch(depth + 1), offset, potentialBreaks);
+                lastBreakPosition = i;
             }
         }
+    }
 
-        List<PotentialBreak> result = new ArrayList<>();
-        for (int i = 1; i < potentialBreaks.length; i++) {
-            if (potentialBreaks[i].getFirst() % 2 == 1) {
-                result.add(new PotentialBreakImpl(i-1, potentialBreaks[i].getFirst(), potentialBreaks[i].getSecond()));
-            }
+    private Scratch scratch(int depth) {
+        while (scratches.size() <= depth) {
+            scratches.add(new Scratch());
         }
-        return result;
+        return scratches.get(depth);
     }
 
-    private String applyReplacementToSegment(String segment, HyphenDict.BreakRule breakLeft, HyphenDict.BreakRule breakRight) {
+    /**
+     * Loads the compound part {@code word[from, to)} into the segment buffer, with its start replaced by the
+     * right side of the replacement of {@code breakLeft} and its end by the left side of the replacement of
+     * {@code breakRight} (e.g. {@code schiff|ahrt} is matched as {@code fahrt}).
+     */
+    private static void loadReplacedSegment(WordBuffer segment, WordBuffer word, int from, int to, HyphenDict.BreakRule breakLeft, HyphenDict.BreakRule breakRight) {
+        String prefix = "";
         if (breakLeft != null && breakLeft.replacement != null) {
-            segment = breakLeft.replacement.substring(breakLeft.replacement.indexOf("=") + 1) +
-                    segment.substring(breakLeft.replacementIndex + breakLeft.replacementCount - 1);
+            int replaced = breakLeft.replacementIndex + breakLeft.replacementCount - 1;
+            if (replaced < 0 || replaced > to - from)
+                throw new StringIndexOutOfBoundsException("begin " + replaced + ", length " + (to - from));
+            prefix = breakLeft.replacementRight;
+            from += replaced;
         }
+        String suffix = "";
         if (breakRight != null && breakRight.replacement != null) {
-            var replacementStart = segment.length() - 1 + breakRight.replacementIndex;
-            segment = segment.substring(0, replacementStart) + breakRight.replacement.substring(0, breakRight.replacement.indexOf("="));
+            int length = prefix.length() + to - from;
+            int replacementStart = length - 1 + breakRight.replacementIndex;
+            if (replacementStart < 0 || replacementStart > length)
+                throw new StringIndexOutOfBoundsException("end " + replacementStart + ", length " + length);
+            if (breakRight.replacementLeft == null)
+                throw new StringIndexOutOfBoundsException("Replacement without '=': " + breakRight.replacement);
+            if (replacementStart >= prefix.length()) {
+                to = from + replacementStart - prefix.length();
+            } else {
+                prefix = prefix.substring(0, replacementStart);
+                to = from;
+            }
+            suffix = breakRight.replacementLeft;
         }
-        return segment;
+        segment.load(prefix, word, from, to, suffix);
     }
 
-    private void mergeBreakList(List<PotentialBreak> newBreaks, int offset, Pair<Integer, HyphenDict.BreakRule>[] potentialBreaks) {
-        for (var newBreak : newBreaks) {
-            var newBreakPosition = ((PotentialBreakImpl)newBreak).position() + offset;
-            potentialBreaks[newBreakPosition].setFirst(((PotentialBreakImpl)newBreak).priority());
-            potentialBreaks[newBreakPosition].setSecond(((PotentialBreakImpl)newBreak).breakRule());
+    /**
+     * Copies the breaks found in a segment (odd values of its scratch) into the breaks of its parent,
+     * shifted by the offset of the segment in the parent word.
+     */
+    private void mergeBreaks(Scratch segmentBreaks, int offset, Scratch potentialBreaks) {
+        for (int i = 1; i < segmentBreaks.length; i++) {
+            if (segmentBreaks.values[i] % 2 == 1) {
+                potentialBreaks.set(i - 1 + offset, segmentBreaks.values[i], segmentBreaks.rules[i]);
+            }
         }
     }
 
-    private void applyRulesFromDict(HyphenDict dict, String text, Pair<Integer, HyphenDict.BreakRule>[] breakCandidates) {
-        int textLength = text.length();
+    /**
+     * Applies the patterns of the level to the word buffer. If {@code noHyphenText} is given, the NOHYPHEN
+     * strings are matched against it in the same pass, marking the positions where they forbid a break.
+     * Patterns are only matched from where they can reach the indices {@code from} to {@code to}.
+     */
+    private void applyRulesFromDict(HyphenDict dict, WordBuffer word, Scratch breakCandidates, CharSequence noHyphenText,
+                                    int from, int to) {
+        PatternTrie trie = dict.trie;
+        PatternTrie overlayTrie = dict.overlayTrie;
+        int firstStart = from - trie.maxPatternLength();
+        int firstOverlayStart = overlayTrie != null ? from - overlayTrie.maxPatternLength() : 0;
+        char[] text = word.array();
+        int textLength = word.length();
+        int[] values = breakCandidates.values;
+        HyphenDict.BreakRule[] rules = breakCandidates.rules;
+        int lookups = 0;
         for (int start = 0; start < textLength - 1; start++) {
-            for (int end = start + 1; end <= textLength; end++) {
-                String toMatch = text.substring(start, end).toLowerCase();
-                if (dict.rules.containsKey(toMatch)) {
-                    for (var breakRuleEntry : dict.rules.get(toMatch).getBreakRules().entrySet()) {
-                        int breakPosition = start + breakRuleEntry.getKey();
-                        int priority = breakRuleEntry.getValue().getValue();
-                        if (priority > breakCandidates[breakPosition].getFirst()) {
-                            breakCandidates[breakPosition].setFirst(priority);
-                            breakCandidates[breakPosition].setSecond(breakRuleEntry.getValue());
-                        }
-                    }
+            if (noHyphenText != null && start < noHyphenText.length())
+                matchNoHyphens(dict.noHyphenTrie, noHyphenText, start, breakCandidates);
+            if (start > to)
+                continue;
+            if (start >= firstStart)
+                lookups += matchPatterns(trie, text, textLength, start, values, rules);
+            if (overlayTrie != null && start >= firstOverlayStart)
+                lookups += matchPatterns(overlayTrie, text, textLength, start, values, rules);
+        }
+        probes += lookups;
+    }
+
+    /**
+     * Applies the patterns starting at {@code start} of the text, keeping the highest value at every position.
+     *
+     * @return the number of trie lookups done
+     */
+    private static int matchPatterns(PatternTrie trie, char[] text, int textLength, int start, int[] values, HyphenDict.BreakRule[] rules) {
+        int lookups = 0;
+        int node = PatternTrie.ROOT;
+        // walk only as far as some pattern continues
+        for (int end = start; end < textLength; end++) {
+            lookups++;
+            node = trie.child(node, text[end]);
+            if (node == PatternTrie.NO_NODE)
+                break;
+            for (int output = trie.outputStart(node); output < trie.outputEnd(node); output++) {
+                int breakPosition = start + trie.outputOffset(output);
+                if (breakPosition >= textLength)
+                    continue;
+                var breakRule = trie.outputRule(output);
+                if (breakRule.getValue() > values[breakPosition]) {
+                    values[breakPosition] = breakRule.getValue();
+                    rules[breakPosition] = breakRule;
                 }
             }
         }
+        return lookups;
     }
 
 
-    private void applyBorderRules(Pair<Integer, HyphenDict.BreakRule>[] potentialBreaks, int leftHyphenMin, int rightHyphenMin, boolean isWordLeftEnd, boolean isWordRightEnd) {
+    private static void matchNoHyphens(PatternTrie noHyphenTrie, CharSequence text, int start, Scratch breakCandidates) {
+        int node = PatternTrie.ROOT;
+        for (int end = start; end < text.length(); end++) {
+            node = noHyphenTrie.child(node, text.charAt(end));
+            if (node == PatternTrie.NO_NODE)
+                break;
+            for (int output = noHyphenTrie.outputStart(node); output < noHyphenTrie.outputEnd(node); output++) {
+                // position start + offset of the text, which is index + 1 of the scratch
+                breakCandidates.suppressed[start + noHyphenTrie.outputOffset(output) + 1] = true;
+            }
+        }
+    }
+
+    private void applyBorderRules(Scratch potentialBreaks, int leftHyphenMin, int rightHyphenMin, boolean isWordLeftEnd, boolean isWordRightEnd) {
         if (!isWordLeftEnd) {
             for (int i = 0; i <= leftHyphenMin; i++) {
-                potentialBreaks[i].setFirst(0);
-                potentialBreaks[i].setSecond(null);
+                potentialBreaks.set(i, 0, null);
             }
         }
 
         if (!isWordRightEnd) {
             for (int i = potentialBreaks.length - rightHyphenMin; i < potentialBreaks.length; i++) {
-                potentialBreaks[i].setFirst(0);
-                potentialBreaks[i].setSecond(null);
+                potentialBreaks.set(i, 0, null);
             }
         }
     }
 
+    /**
+     * Break candidates of one nesting level: the priority and the rule of a break before every character of
+     * the word buffer. The arrays are reused for every word and only valid up to {@link #length}.
+     */
+    private static final class Scratch {
+        final WordBuffer word = new WordBuffer();
+        int[] values = new int[32];
+        HyphenDict.BreakRule[] rules = new HyphenDict.BreakRule[32];
+        // positions where a NOHYPHEN string forbids a break, only used by the outermost level
+        boolean[] suppressed = new boolean[32];
+        int length = 0;
+
+        void reset(int length) {
+            if (values.length < length) {
+                values = new int[Math.max(length, values.length * 2)];
+                rules = new HyphenDict.BreakRule[values.length];
+                suppressed = new boolean[values.length];
+            } else {
+                Arrays.fill(values, 0, length, 0);
+                Arrays.fill(rules, 0, length, null);
+                Arrays.fill(suppressed, 0, length, false);
+            }
+            this.length = length;
+        }
 
+        void set(int index, int value, HyphenDict.BreakRule rule) {
+            // the arrays are longer than the word, so check against the word length
+            if (index < 0 || index >= length)
+                throw new ArrayIndexOutOfBoundsException(index);
+            values[index] = value;
+            rules[index] = rule;
+        }
+
+        void clear(int index) {
+            if (index > 0 && index < length) {
+                values[index] = 0;
+                rules[index] = null;
+            }
+        }
+    }
 }
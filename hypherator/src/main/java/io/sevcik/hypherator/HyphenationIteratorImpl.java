@@ -3,19 +3,26 @@ package io.sevcik.hypherator;
 import io.sevcik.hypherator.dto.Pair;
 import io.sevcik.hypherator.dto.PotentialBreak;
 
-import java.util.List;
-
+/**
+ * Iterator over the breaks of one word at a time, a thin stateful view on a shared {@link Hyphenator}.
+ */
 public class HyphenationIteratorImpl implements HyphenationIterator {
     private String word = null;
     private int priorityFilter = 1;
-    private final HyphenDict dict;
-    private final Hyphenate hyphenate;
-    private List<PotentialBreak> breaks = null;
+    private final Hyphenator hyphenator;
+    private PackedBreaks breaks = null;
     private int index = -1; // -1 indicates not initialized
 
     protected HyphenationIteratorImpl(HyphenDict dict) {
-        this.dict = dict;
-        this.hyphenate = new HyphenateImpl();
+        this(dict, null);
+    }
+
+    HyphenationIteratorImpl(HyphenDict dict, BreakCache cache) {
+        this(new Hyphenator(dict, cache, null));
+    }
+
+    HyphenationIteratorImpl(Hyphenator hyphenator) {
+        this.hyphenator = hyphenator;
     }
     
     @Override
@@ -26,13 +33,13 @@ public class HyphenationIteratorImpl implements HyphenationIterator {
 
     @Override
     public String getHyphen() {
-        return dict.hyphen;
+        return hyphenator.getHyphen();
     }
 
     @Override
     public void setWord(String word) {
         this.word = word;
-        this.breaks = hyphenate.hyphenate(dict, word);
+        this.breaks = hyphenator.hyphenate(word);
         resetState();
     }
 
@@ -40,11 +47,7 @@ public class HyphenationIteratorImpl implements HyphenationIterator {
     public PotentialBreak first() {
         if (word == null) throw new IllegalStateException("No word has been set");
         index = 0;
-        while (index < breaks.size() && ((PotentialBreakImpl)breaks.get(index)).priority() < priorityFilter) index++;
-        if (index < breaks.size()) {
-            return breaks.get(index);
-        }
-        return HyphenationIterator.DONE;
+        return current();
     }
 
     @Override
@@ -52,34 +55,38 @@ public class HyphenationIteratorImpl implements HyphenationIterator {
         if (index == -1) throw new IllegalStateException("Iterator not initialized with first()");
         if (word == null) throw new IllegalStateException("No word has been set");
         index++;
-        while (index < breaks.size() && ((PotentialBreakImpl)breaks.get(index)).priority() < priorityFilter) index++;
-        if (index < breaks.size()) {
-            return breaks.get(index);
-        }
-        return HyphenationIterator.DONE;
+        return current();
     }
     
     @Override
     public Pair<String, String> applyBreak(PotentialBreak breakRule) {
-        return hyphenate.applyBreak(word, breakRule);
+        return hyphenator.applyBreak(word, breakRule);
     }
 
     @Override
     public HyphenationIterator getInstanceOnRightPart(PotentialBreak breakRule) {
         if (breaks == null) throw new IllegalStateException("No word has been set");
         if (breakRule == null) throw new IllegalArgumentException("Break rule cannot be null");
-        var parts = hyphenate.applyBreak(word, breakRule);
-        var newPotentialBreaksList = hyphenate.getFurtherHyphenations(dict, breaks, breakRule, parts.getSecond());
-        var newIterator = new HyphenationIteratorImpl(dict);
+        var parts = hyphenator.applyBreak(word, breakRule);
+        var newPotentialBreaksList = hyphenator.getFurtherHyphenations(breaks.toList(), breakRule, parts.getSecond());
+        var newIterator = new HyphenationIteratorImpl(hyphenator);
 
         newIterator.priorityFilter = priorityFilter;
         newIterator.word = parts.getSecond();
-        newIterator.breaks = newPotentialBreaksList;
+        newIterator.breaks = PackedBreaks.of(newPotentialBreaksList);
         newIterator.index = -1;
         return newIterator;
 
     }
 
+    private PotentialBreak current() {
+        while (index < breaks.size() && breaks.priority(index) < priorityFilter) index++;
+        if (index < breaks.size()) {
+            return breaks.get(index);
+        }
+        return HyphenationIterator.DONE;
+    }
+
     private void resetState() {
         index = -1;
     }
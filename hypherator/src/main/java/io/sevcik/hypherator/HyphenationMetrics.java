@@ -0,0 +1,84 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.MetricsSnapshot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime counters of a single {@link HyphenDict}, shared by all threads using the dictionary.
+ * <p>
+ * All counters are {@link LongAdder}s, which spread concurrent updates over several cells, so recording
+ * stays cheap even when many threads hyphenate with the same dictionary. {@link HyphenateImpl} counts the
+ * work of a word in plain fields and records it here once per word, or once per bounded break query.
+ */
+class HyphenationMetrics {
+    // bucket i counts latencies in [2^i, 2^(i+1)) ns, the last bucket everything longer
+    static final int LATENCY_BUCKETS = 40;
+
+    private final long loadTimeNanos;
+    private final int patternCount;
+    private final long footprintBytes;
+
+    private final LongAdder words = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder breaks = new LongAdder();
+    private final LongAdder ruleProbes = new LongAdder();
+    private final LongAdder compoundRecursions = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS];
+
+    HyphenationMetrics(long loadTimeNanos, int patternCount, long footprintBytes) {
+        this.loadTimeNanos = loadTimeNanos;
+        this.patternCount = patternCount;
+        this.footprintBytes = footprintBytes;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one hyphenated word.
+     *
+     * @param breakCount the number of breaks found
+     * @param probes the number of trie lookups done for the word
+     * @param recursions the number of nested {@code applyStandardRules} calls for compound parts and levels
+     * @param latencyNanos the time spent on the word
+     */
+    void recordWord(int breakCount, int probes, int recursions, long latencyNanos) {
+        words.increment();
+        breaks.add(breakCount);
+        ruleProbes.add(probes);
+        compoundRecursions.add(recursions);
+        totalLatencyNanos.add(latencyNanos);
+        latencyBuckets[bucket(latencyNanos)].increment();
+    }
+
+    /**
+     * Records one bounded break query ({@code breakBefore} or {@code breakAfter}). A query only matches the
+     * part of a word around the position and returns a single break, so it is counted apart from the
+     * hyphenated words and kept out of their break counts and latencies; only its matching work is added.
+     *
+     * @param probes the number of trie lookups done for the query
+     * @param recursions the number of nested {@code applyStandardRules} calls for compound parts and levels
+     */
+    void recordQuery(int probes, int recursions) {
+        queries.increment();
+        ruleProbes.add(probes);
+        compoundRecursions.add(recursions);
+    }
+
+    MetricsSnapshot snapshot() {
+        long[] buckets = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            buckets[i] = latencyBuckets[i].sum();
+        }
+        return new MetricsSnapshot(words.sum(), queries.sum(), breaks.sum(), ruleProbes.sum(), compoundRecursions.sum(),
+                totalLatencyNanos.sum(), buckets, loadTimeNanos, patternCount, footprintBytes);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos <= 0)
+            return 0;
+        return Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+    }
+}
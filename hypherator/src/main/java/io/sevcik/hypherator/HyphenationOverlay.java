@@ -0,0 +1,134 @@
+package io.sevcik.hypherator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Custom patterns and whole-word exceptions layered over a shared dictionary, e.g. for the brand names and
+ * domain terms of one tenant.
+ * <p>
+ * An overlay only holds its own additions. Applying it to a dictionary (see
+ * {@link Hypherator#getHyphenator(String, HyphenationOverlay)}) creates a handful of small objects that share
+ * all pattern data of the dictionary, so any number of overlays can be used with one dictionary at the cost
+ * of their additions only. Overlays are immutable; {@link #toBuilder()} starts a modified copy.
+ * <p>
+ * Patterns use the syntax of the dictionary files and are matched together with the innermost level of the
+ * dictionary, the higher value winning at every position. Exceptions are whole words with hyphens at their
+ * breaks, e.g. {@code hy-phen-ation}; they replace the breaks found by the patterns for that word (in any case)
+ * and are always given priority {@value #EXCEPTION_PRIORITY}.
+ */
+public final class HyphenationOverlay {
+    /**
+     * Priority of the breaks of an exception.
+     */
+    public static final int EXCEPTION_PRIORITY = 9;
+
+    private final List<String> patterns;
+    private final List<String> exceptions;
+    // compiled additions, shared by all dictionaries the overlay is applied to
+    final PatternTrie trie;
+    final Map<String, int[]> exceptionBreaks;
+
+    private HyphenationOverlay(List<String> patterns, List<String> exceptions) {
+        this.patterns = List.copyOf(patterns);
+        this.exceptions = List.copyOf(exceptions);
+        this.trie = compilePatterns(this.patterns);
+        this.exceptionBreaks = compileExceptions(this.exceptions);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a builder starting with the patterns and exceptions of this overlay.
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.patterns.addAll(patterns);
+        builder.exceptions.addAll(exceptions);
+        return builder;
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public List<String> getExceptions() {
+        return exceptions;
+    }
+
+    private static PatternTrie compilePatterns(List<String> patterns) {
+        if (patterns.isEmpty())
+            return null;
+        HyphenDictBuilder.Level level = new HyphenDictBuilder.Level();
+        for (String pattern : patterns) {
+            try {
+                HyphenDictBuilder.addNormalRule(level, pattern);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid pattern: " + pattern, e);
+            }
+        }
+        return PatternTrie.build(level.rules);
+    }
+
+    private static Map<String, int[]> compileExceptions(List<String> exceptions) {
+        if (exceptions.isEmpty())
+            return null;
+        Map<String, int[]> result = new HashMap<>();
+        WordBuffer buffer = new WordBuffer();
+        for (String exception : exceptions) {
+            if (exception.isEmpty() || exception.startsWith("-") || exception.endsWith("-") || exception.contains("--"))
+                throw new IllegalArgumentException("Invalid exception: " + exception);
+            String word = exception.replace("-", "");
+            int[] positions = new int[exception.length() - word.length()];
+            int count = 0;
+            for (int i = 0; i < exception.length(); i++) {
+                if (exception.charAt(i) == '-') {
+                    positions[count] = i - count;
+                    count++;
+                }
+            }
+            // keyed by the word as the engine sees it, so that the lookup needs no case conversion
+            buffer.load(word, 0, word.length());
+            result.put(buffer.subSequence(1, buffer.length() - 1).toString(), positions);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public static final class Builder {
+        private final List<String> patterns = new ArrayList<>();
+        private final List<String> exceptions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a pattern in the syntax of the dictionary files, e.g. {@code 1na} or {@code x2y}.
+         */
+        public Builder addPattern(String pattern) {
+            patterns.add(pattern.trim());
+            return this;
+        }
+
+        /**
+         * Adds a word with hyphens at all its breaks, e.g. {@code hy-phen-ation}.
+         */
+        public Builder addException(String hyphenatedWord) {
+            exceptions.add(hyphenatedWord.trim());
+            return this;
+        }
+
+        /**
+         * Builds the overlay.
+         *
+         * @throws IllegalArgumentException if a pattern or an exception cannot be parsed
+         */
+        public HyphenationOverlay build() {
+            return new HyphenationOverlay(patterns, exceptions);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.HyphenationBatch;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Processor} hyphenating batches of tokens of one locale, for reactive pipelines.
+ * <p>
+ * Every batch of tokens received is hyphenated as a whole with {@link Hyphenator#hyphenateAll(List)}, so the
+ * dictionary and the scratch buffers are set up once per batch, and published as one {@link HyphenationBatch},
+ * in the order the batches were received. Hyphenation runs on the executor, one batch after the other.
+ * <p>
+ * The processor passes the demand of its subscriber on to its upstream and requests no more batches than
+ * its subscriber has asked results for, so a slow subscriber slows down hyphenation and its publisher instead
+ * of results piling up. A processor serves a single subscriber; further ones are rejected with an
+ * {@link IllegalStateException}. Upstream errors and completion are passed on once all batches received
+ * before them are published.
+ */
+public final class HyphenationProcessor implements Flow.Processor<List<? extends CharSequence>, HyphenationBatch> {
+    private final Hyphenator hyphenator;
+    private final Executor executor;
+
+    private final Queue<List<? extends CharSequence>> batches = new ConcurrentLinkedQueue<>();
+    // results requested by the subscriber and not yet published, Long.MAX_VALUE for unbounded
+    private final AtomicLong demand = new AtomicLong();
+    // demand not yet passed on to the upstream
+    private final AtomicLong pendingRequests = new AtomicLong();
+    // number of pending drain requests; only the thread taking it from 0 drains
+    private final AtomicInteger work = new AtomicInteger();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super HyphenationBatch> downstream;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    // only accessed by the draining thread
+    private boolean terminated;
+
+    /**
+     * Creates a processor hyphenating on the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param hyphenator the hyphenator of the locale of the tokens
+     */
+    public HyphenationProcessor(Hyphenator hyphenator) {
+        this(hyphenator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a processor hyphenating on the executor.
+     *
+     * @param hyphenator the hyphenator of the locale of the tokens, e.g. from {@link Hypherator#getHyphenator(String)}
+     * @param executor the executor to hyphenate and publish on
+     */
+    public HyphenationProcessor(Hyphenator hyphenator, Executor executor) {
+        this.hyphenator = Objects.requireNonNull(hyphenator, "hyphenator");
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super HyphenationBatch> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The processor serves a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested " + n + " results, must be positive"));
+                    return;
+                }
+                add(demand, n);
+                add(pendingRequests, n);
+                requestUpstream();
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription subscription = upstream;
+                if (subscription != null)
+                    subscription.cancel();
+            }
+        });
+        // published to only once it has been subscribed, so onSubscribe comes first
+        downstream = subscriber;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (upstream != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        requestUpstream();
+    }
+
+    @Override
+    public void onNext(List<? extends CharSequence> tokens) {
+        batches.add(Objects.requireNonNull(tokens, "tokens"));
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = Objects.requireNonNull(throwable, "throwable");
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private void fail(Throwable throwable) {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null)
+            subscription.cancel();
+        batches.clear();
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    private void requestUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription == null)
+            return;
+        long n = pendingRequests.getAndSet(0);
+        if (n > 0)
+            subscription.request(n);
+    }
+
+    private void drain() {
+        if (work.getAndIncrement() != 0)
+            return;
+        try {
+            executor.execute(this::publish);
+        } catch (RejectedExecutionException e) {
+            cancelled = true;
+            Flow.Subscription subscription = upstream;
+            if (subscription != null)
+                subscription.cancel();
+            Flow.Subscriber<? super HyphenationBatch> subscriber = downstream;
+            if (subscriber != null)
+                subscriber.onError(e);
+        }
+    }
+
+    private void publish() {
+        int missed = 1;
+        while (true) {
+            Flow.Subscriber<? super HyphenationBatch> subscriber = downstream;
+            if (subscriber != null && !terminated) {
+                long requested = demand.get();
+                long published = 0;
+                while (!cancelled && !terminated) {
+                    boolean finished = done;
+                    if (published == requested || batches.isEmpty()) {
+                        if (finished && batches.isEmpty())
+                            terminate(subscriber);
+                        break;
+                    }
+                    HyphenationBatch result;
+                    try {
+                        result = hyphenator.hyphenateAll(batches.poll());
+                    } catch (RuntimeException e) {
+                        cancelled = true;
+                        terminated = true;
+                        upstream.cancel();
+                        subscriber.onError(e);
+                        break;
+                    }
+                    subscriber.onNext(result);
+                    published++;
+                }
+                if (published != 0 && requested != Long.MAX_VALUE)
+                    demand.addAndGet(-published);
+            }
+            if (cancelled)
+                batches.clear();
+            missed = work.addAndGet(-missed);
+            if (missed == 0)
+                return;
+        }
+    }
+
+    private void terminate(Flow.Subscriber<? super HyphenationBatch> subscriber) {
+        terminated = true;
+        Throwable throwable = error;
+        if (throwable != null) {
+            subscriber.onError(throwable);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private static void add(AtomicLong counter, long n) {
+        counter.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+    }
+}
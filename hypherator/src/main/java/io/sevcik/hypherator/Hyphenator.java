@@ -0,0 +1,249 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.HyphenationBatch;
+import io.sevcik.hypherator.dto.Pair;
+import io.sevcik.hypherator.dto.PotentialBreak;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Stateless, thread-safe hyphenation of the words of one locale.
+ * <p>
+ * Unlike a {@link HyphenationIterator}, a {@code Hyphenator} keeps no per-word state: every method takes the
+ * word and returns its result, so a single instance can be shared by all threads. Each thread hyphenates with
+ * its own scratch arrays, kept in a thread local shared by all hyphenators of all locales and overlays and grown
+ * to the longest word that thread has seen, so in the steady state nothing is allocated apart from the result.
+ * <p>
+ * Results are looked up in the result cache of the locale and then in its persistent cache, if enabled (see
+ * {@link Hypherator#setCacheSize(int)} and {@link Hypherator#setPersistentCache(java.nio.file.Path, long)}),
+ * before the word is hyphenated.
+ * <p>
+ * Get an instance with {@link Hypherator#getHyphenator(String)}.
+ */
+public final class Hyphenator {
+    private static final ThreadLocal<HyphenateImpl> ENGINES = ThreadLocal.withInitial(HyphenateImpl::new);
+
+    private final HyphenDict dict;
+    private final BreakCache cache;
+    private final PersistentBreakCache persistentCache;
+    private final HyphenationMetrics metrics;
+
+    Hyphenator(HyphenDict dict, BreakCache cache, HyphenationMetrics metrics) {
+        this(dict, cache, null, metrics);
+    }
+
+    Hyphenator(HyphenDict dict, BreakCache cache, PersistentBreakCache persistentCache, HyphenationMetrics metrics) {
+        this.dict = dict;
+        this.cache = cache;
+        this.persistentCache = persistentCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the breaks of the word, ordered by position.
+     *
+     * @param word the word to hyphenate
+     * @return the breaks of the word
+     */
+    public PackedBreaks hyphenate(CharSequence word) {
+        if (cache == null && persistentCache == null) {
+            return engine().hyphenatePacked(dict, word);
+        }
+        String key = word.toString();
+        PackedBreaks breaks = cache != null ? cache.get(key) : null;
+        if (breaks == null) {
+            breaks = persistentCache != null ? persistentCache.get(key) : null;
+            if (breaks == null) {
+                breaks = engine().hyphenatePacked(dict, key);
+                if (persistentCache != null)
+                    persistentCache.put(key, breaks);
+            }
+            if (cache != null)
+                cache.put(key, breaks);
+        }
+        return breaks;
+    }
+
+    /**
+     * Returns the breaks of the word given as UTF-8 bytes, e.g. straight from a network or memory-mapped
+     * buffer, without creating a {@code String}. The buffer may be on the heap or direct; its position and
+     * limit are not changed. Results do not go through the result cache, which is keyed by strings.
+     *
+     * @param utf8 the buffer holding the word
+     * @param offset the index of the first byte of the word in the buffer
+     * @param length the number of bytes of the word
+     * @return the breaks of the word, positioned in characters and in bytes
+     * @throws IndexOutOfBoundsException if the bytes lie outside the limit of the buffer
+     */
+    public Utf8Breaks hyphenateUtf8(ByteBuffer utf8, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, utf8.limit());
+        return engine().hyphenateUtf8(dict, utf8, offset, offset + length);
+    }
+
+    /**
+     * Returns the breaks of the word given as the remaining UTF-8 bytes of the buffer.
+     *
+     * @see #hyphenateUtf8(ByteBuffer, int, int)
+     */
+    public Utf8Breaks hyphenateUtf8(ByteBuffer utf8) {
+        return hyphenateUtf8(utf8, utf8.position(), utf8.remaining());
+    }
+
+    /**
+     * Returns the last break at or before the position, e.g. the break that best fits the rest of a line.
+     * Only the part of the word that can affect breaks near the position is matched, so for long words this
+     * is cheaper than finding all of their breaks.
+     *
+     * @param word the word to hyphenate
+     * @param position the largest acceptable position of the break (the number of characters before it)
+     * @param urgency the urgency as in {@link HyphenationIterator#setUrgency(int)}, 9 accepting all breaks
+     * @return the break, or {@code null} if there is no acceptable break at or before the position
+     */
+    public PotentialBreak breakBefore(CharSequence word, int position, int urgency) {
+        PackedBreaks breaks = cached(word);
+        if (breaks == null)
+            return engine().breakBefore(dict, word, position, urgency);
+        for (int k = breaks.size() - 1; k >= 0; k--) {
+            if (breaks.position(k) <= position && breaks.priority(k) >= 10 - urgency)
+                return breaks.get(k);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first break after the position, matching only the part of the word needed to find it.
+     *
+     * @param word the word to hyphenate
+     * @param position the position the break has to follow
+     * @param urgency the urgency as in {@link HyphenationIterator#setUrgency(int)}, 9 accepting all breaks
+     * @return the break, or {@code null} if there is no acceptable break after the position
+     * @see #breakBefore(CharSequence, int, int)
+     */
+    public PotentialBreak breakAfter(CharSequence word, int position, int urgency) {
+        PackedBreaks breaks = cached(word);
+        if (breaks == null)
+            return engine().breakAfter(dict, word, position, urgency);
+        for (int k = 0; k < breaks.size(); k++) {
+            if (breaks.position(k) > position && breaks.priority(k) >= 10 - urgency)
+                return breaks.get(k);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the breaks of all the words in columnar form.
+     *
+     * @param words the words to hyphenate
+     * @return the breaks of all words, in the order of the words
+     * @see Hyphenate#hyphenateAll(HyphenDict, List)
+     */
+    public HyphenationBatch hyphenateAll(List<? extends CharSequence> words) {
+        return engine().hyphenateAll(dict, words);
+    }
+
+    /**
+     * Hyphenates the words in parallel on the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param words the words to hyphenate
+     * @return the breaks of all words in columnar form, in the order of the words
+     * @see #hyphenateAllAsync(Spliterator, Executor)
+     */
+    public CompletableFuture<HyphenationBatch> hyphenateAllAsync(Collection<? extends CharSequence> words) {
+        return hyphenateAllAsync(words.spliterator(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Hyphenates the words in parallel on the executor.
+     *
+     * @param words the words to hyphenate
+     * @param executor the executor to hyphenate on
+     * @return the breaks of all words in columnar form, in the order of the words
+     * @see #hyphenateAllAsync(Spliterator, Executor)
+     */
+    public CompletableFuture<HyphenationBatch> hyphenateAllAsync(Collection<? extends CharSequence> words, Executor executor) {
+        return hyphenateAllAsync(words.spliterator(), executor);
+    }
+
+    /**
+     * Hyphenates the words in parallel on the executor, for bulk jobs of many words. The words are split
+     * into chunks of about a thousand words, each hyphenated as a whole by one thread with its own engine.
+     * On a {@link ForkJoinPool} the chunks are split off by the workers themselves, so the work is balanced by
+     * work stealing; other executors get all chunks at once. The spliterator must not be used afterwards.
+     *
+     * @param words the words to hyphenate
+     * @param executor the executor to hyphenate on
+     * @return the breaks of all words in columnar form, in the order of the words
+     */
+    public CompletableFuture<HyphenationBatch> hyphenateAllAsync(Spliterator<? extends CharSequence> words, Executor executor) {
+        return BulkHyphenation.hyphenate(this, words, executor);
+    }
+
+    /**
+     * Splits the word at the given break of its {@link #hyphenate(CharSequence) breaks}.
+     *
+     * @param word the word the break was found in
+     * @param breaks the breaks of the word
+     * @param index the index of the break to apply
+     * @return the parts of the word before and after the break, with the non-standard replacement applied if any
+     */
+    public Pair<String, String> applyBreak(String word, PackedBreaks breaks, int index) {
+        return applyBreak(word, breaks.get(index));
+    }
+
+    /**
+     * Splits the word at the given break.
+     *
+     * @param word the word the break was found in
+     * @param potentialBreak the break to apply
+     * @return the parts of the word before and after the break, with the non-standard replacement applied if any
+     */
+    public Pair<String, String> applyBreak(String word, PotentialBreak potentialBreak) {
+        return engine().applyBreak(word, potentialBreak);
+    }
+
+    /**
+     * Creates a new iterator over the breaks of the words of this locale, backed by this hyphenator.
+     */
+    public HyphenationIterator iterator() {
+        return new HyphenationIteratorImpl(this);
+    }
+
+    /**
+     * Returns the default hyphen sign of the locale.
+     */
+    public String getHyphen() {
+        return dict.hyphen;
+    }
+
+    /**
+     * Returns the engine of the calling thread, recording into the metrics of this hyphenator.
+     */
+    private HyphenateImpl engine() {
+        return ENGINES.get().withMetrics(metrics);
+    }
+
+    /**
+     * Returns the breaks of the word from the caches, or {@code null} if they are not cached.
+     */
+    private PackedBreaks cached(CharSequence word) {
+        if (cache == null && persistentCache == null)
+            return null;
+        String key = word.toString();
+        PackedBreaks breaks = cache != null ? cache.get(key) : null;
+        return breaks != null || persistentCache == null ? breaks : persistentCache.get(key);
+    }
+
+    /**
+     * Returns the breaks of the part of the word after the given break.
+     */
+    List<PotentialBreak> getFurtherHyphenations(List<PotentialBreak> breaks, PotentialBreak potentialBreak, String rightPart) {
+        return engine().getFurtherHyphenations(dict, breaks, potentialBreak, rightPart);
+    }
+}
@@ -1,12 +1,24 @@
 package io.sevcik.hypherator;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import io.sevcik.hypherator.dto.CacheStats;
 import io.sevcik.hypherator.dto.DictionaryEntry;
+import io.sevcik.hypherator.dto.HyphenationBatch;
+import io.sevcik.hypherator.dto.MetricsSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,30 +33,109 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * of {@code Hyphenator}. You are free to create as many instances as you wish, as all
  * hyphenation data is managed and shared internally.
  * <br><br>
+ * A dictionary is loaded lazily, the first time an iterator for one of its locales is requested.
+ * Locales that should be ready before the first request can be listed (comma separated) in the
+ * {@value #PRELOAD_PROPERTY} system property, or {@code *} to preload all of them; alternatively
+ * call {@link #preload(String...)} during the application start-up. {@link #preloadAsync(Executor, String...)}
+ * loads many dictionaries in parallel in the background and {@link #whenReady(String)} tells when a locale is ready.
+ * <br><br>
+ * Iterators can share a bounded cache of hyphenation results per dictionary, which pays off for
+ * natural-language text where the same words repeat over and over. It is disabled by default and
+ * enabled by the {@value #CACHE_SIZE_PROPERTY} system property or {@link #setCacheSize(int)}. Results can
+ * also be kept in memory-mapped files that outlive the JVM and are shared by all JVMs of a host, see
+ * {@link #setPersistentCache(Path, long)} and the {@value #PERSISTENT_CACHE_PROPERTY} system property.
+ * Runtime metrics per dictionary are available from {@link #getMetrics(String)}; hyphenation is
+ * recorded once enabled by the {@value #METRICS_PROPERTY} system property or {@link #setMetricsEnabled(boolean)}.
+ * <br><br>
+ * Dictionaries can also be read from a directory laid out like the bundled {@code hyphen} resources, which
+ * takes precedence over them and is watched for changes, so that updated pattern files are picked up without
+ * a restart; see {@link #watchDirectory(Path)} and the {@value #DIRECTORY_PROPERTY} system property.
+ * <br><br>
  * This approach ensures efficient memory usage and keeps
  * hyphenation operations lightweight for your application.
  * <p>
- * Use {@link #getInstance(String)} to create new hyphenation iterators for specific locales.
+ * Use {@link #getInstance(String)} to create new hyphenation iterators for specific locales, or
+ * {@link #getHyphenator(String)} for a stateless hyphenator that can be shared between threads.
+ * Locales are BCP-47 tags, also with underscores; a locale without a dictionary of its own falls back to a more
+ * general one, e.g. {@code de-AT-1996} to {@code de-AT} or {@code de}. {@link #resolve(String)} does that once
+ * and returns a {@link LocaleHandle} to keep.
  * <p>
  * Sponsored by <a href="https://pdf365.cloud">pdf365.cloud</a>.
  */
 
 
 public class Hypherator {
+    /**
+     * System property with the comma separated list of locales to load when the class is initialized,
+     * or {@code *} to load all known dictionaries.
+     */
+    public static final String PRELOAD_PROPERTY = "hypherator.preload";
+
+    /**
+     * System property making the {@value #PRELOAD_PROPERTY} preloading run in the background, in parallel,
+     * instead of blocking the class initialization.
+     */
+    public static final String PRELOAD_ASYNC_PROPERTY = "hypherator.preload.async";
+
+    /**
+     * System property with the maximum number of words whose hyphenation is cached per dictionary.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "hypherator.cache.size";
+
+    /**
+     * System property with the directory of the {@link #setPersistentCache(Path, long) persistent result caches}.
+     */
+    public static final String PERSISTENT_CACHE_PROPERTY = "hypherator.cache.persistent";
+
+    /**
+     * System property with the maximum size in bytes of the persistent result cache of each dictionary,
+     * {@value #DEFAULT_PERSISTENT_CACHE_SIZE} by default.
+     */
+    public static final String PERSISTENT_CACHE_SIZE_PROPERTY = "hypherator.cache.persistent.size";
+
+    /**
+     * Default maximum size in bytes of the persistent result cache of each dictionary.
+     */
+    public static final long DEFAULT_PERSISTENT_CACHE_SIZE = 64L << 20;
+
+    /**
+     * System property enabling the recording of hyphenation metrics (see {@link #getMetrics(String)}).
+     */
+    public static final String METRICS_PROPERTY = "hypherator.metrics";
+
+    /**
+     * System property with a directory of dictionaries to {@link #watchDirectory(Path) watch}.
+     */
+    public static final String DIRECTORY_PROPERTY = "hypherator.directory";
+
     private static final Logger logger = LoggerFactory.getLogger(Hypherator.class);
     private static final String ALL_JSON_PATH = "/hyphen/all.json";
+    private static final String PRELOAD_ALL = "*";
 
-    private static final Map<String, HyphenDict> dictionaries = new HashMap<>();
+    // locale index of all.json, dictionaries are loaded on demand
+    private static final DictionaryRegistry registry;
+    // the watched directory of dictionaries, if any
+    private static volatile DictionaryWatcher watcher;
     static {
         try {
-            Hypherator.loadDictionaries();
+            registry = new DictionaryRegistry(Hypherator.loadIndex(), Hypherator::loadDictionary);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        registry.setCacheSize(Integer.getInteger(CACHE_SIZE_PROPERTY, 0));
+        String persistentCache = System.getProperty(PERSISTENT_CACHE_PROPERTY);
+        if (persistentCache != null && !persistentCache.isBlank()) {
+            registry.setPersistentCache(Paths.get(persistentCache.trim()),
+                    Long.getLong(PERSISTENT_CACHE_SIZE_PROPERTY, DEFAULT_PERSISTENT_CACHE_SIZE));
+        }
+        registry.setMetricsEnabled(Boolean.getBoolean(METRICS_PROPERTY));
+        watchFromProperty(System.getProperty(DIRECTORY_PROPERTY));
+        preloadFromProperty(System.getProperty(PRELOAD_PROPERTY), Boolean.getBoolean(PRELOAD_ASYNC_PROPERTY));
     }
 
     /**
-     * Creates a new Hyphenator instance and loads all dictionaries.
+     * Creates a new Hyphenator instance and makes sure all dictionaries are loaded.
+     * Dictionaries that have been loaded already are not loaded again.
      * 
      * @throws IOException if there's an error loading the dictionaries
      */
@@ -60,20 +151,265 @@ public class Hypherator {
      *
      * <p>
      * <b>Usage Note:</b> The returned iterator is the recommended way to access hyphenation points and process hyphenation in text.
-     * Calling this method repeatedly for the same locale will create a new iterator instance each time,
-     * but the underlying dictionary is not shared between {@code Hyphenator} instances. For efficiency,
-     * load and reuse the {@code Hyphenator} and its dictionaries as a singleton.
+     * Calling this method repeatedly for the same locale will create a new iterator instance each time, all of
+     * them sharing the loaded dictionary. An iterator keeps the state of its current word, so it must not be
+     * shared between threads; use the thread-safe {@link #getHyphenator(String)} for that, or keep a
+     * {@link LocaleHandle} from {@link #resolve(String)} to skip resolving the locale on every call.
      * </p>
      */
     public static HyphenationIterator getInstance(String locale) {
-        locale = locale.replace('_', '-');
-        HyphenDict dict = dictionaries.get(locale);
+        HyphenDict dict = getOrLoadDictionary(locale);
         if (dict == null) {
             return null;
         }
-        return new HyphenationIteratorImpl(dict);
+        return registry.hyphenatorFor(dict).iterator();
+    }
+
+    /**
+     * Resolves the locale to its dictionary once, for callers that keep the handle instead of looking the
+     * locale up for every word. The dictionary is not loaded until the handle is first used.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @return the handle, or {@code null} if no dictionary is available for the locale
+     */
+    public static LocaleHandle resolve(String locale) {
+        String resolved = registry.resolve(locale);
+        return resolved != null ? new LocaleHandle(registry, registry.entries().get(resolved), resolved) : null;
+    }
+
+    /**
+     * Resolves the locale to its dictionary once.
+     *
+     * @param locale the locale
+     * @return the handle, or {@code null} if no dictionary is available for the locale
+     * @see #resolve(String)
+     */
+    public static LocaleHandle resolve(Locale locale) {
+        return resolve(locale.toLanguageTag());
+    }
+
+    /**
+     * Returns the thread-safe {@link Hyphenator} for the given locale. It keeps no per-word state, so one
+     * instance can be shared by all threads of the application.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @return the {@link Hyphenator} for the locale, or {@code null} if no dictionary is available for the locale
+     */
+    public static Hyphenator getHyphenator(String locale) {
+        HyphenDict dict = getOrLoadDictionary(locale);
+        if (dict == null) {
+            return null;
+        }
+        return registry.hyphenatorFor(dict);
+    }
+
+    /**
+     * Returns a new thread-safe {@link Hyphenator} for the given locale with the custom patterns and exceptions
+     * of the overlay. The dictionary of the locale and the matching buffers of each thread are shared with all
+     * other hyphenators, so creating one per tenant is cheap, but its results do not go through the result cache
+     * of the locale; keep the hyphenator for as long as the overlay is in use.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @param overlay the additions to the dictionary of the locale
+     * @return the {@link Hyphenator}, or {@code null} if no dictionary is available for the locale
+     */
+    public static Hyphenator getHyphenator(String locale, HyphenationOverlay overlay) {
+        HyphenDict dict = getOrLoadDictionary(locale);
+        if (dict == null) {
+            return null;
+        }
+        return new Hyphenator(dict.withOverlay(overlay), null, registry.metricsFor(dict));
     }
 
+    /**
+     * Hyphenates the words of the locale in parallel on the {@link ForkJoinPool#commonPool() common pool},
+     * e.g. for batch jobs over whole document sets.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @param words the words to hyphenate
+     * @return the breaks of all words in columnar form, in the order of the words; completed exceptionally with
+     * an {@link IllegalArgumentException} if no dictionary is available for the locale
+     * @see Hyphenator#hyphenateAllAsync(java.util.Spliterator, Executor)
+     */
+    public static CompletableFuture<HyphenationBatch> hyphenateAllAsync(String locale, Collection<? extends CharSequence> words) {
+        Hyphenator hyphenator = getHyphenator(locale);
+        if (hyphenator == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No dictionary for locale " + locale));
+        }
+        return hyphenator.hyphenateAllAsync(words);
+    }
+
+    /**
+     * Creates a new {@link TextHyphenator} that marks the breaks of running text in the given locale.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @return a new {@link TextHyphenator} for the locale, or {@code null} if no dictionary is available for the locale
+     */
+    public static TextHyphenator getTextHyphenator(String locale) {
+        HyphenDict dict = getOrLoadDictionary(locale);
+        if (dict == null) {
+            return null;
+        }
+        return new TextHyphenator(dict, registry.cacheFor(dict), registry.metricsFor(dict), Locale.forLanguageTag(locale.replace('_', '-')));
+    }
+
+    /**
+     * Sets the maximum number of words whose hyphenation results are cached per dictionary and shared by all
+     * iterators of its locales. Words seen more often are kept in preference to rare ones. {@code 0} disables
+     * the cache. Changing the size discards the cached results.
+     *
+     * @param maximumWords the maximum number of cached words per dictionary
+     */
+    public static void setCacheSize(int maximumWords) {
+        registry.setCacheSize(maximumWords);
+    }
+
+    /**
+     * Keeps hyphenation results in memory-mapped files in the directory, one per dictionary content, so that
+     * they survive restarts and are shared by all JVMs of the host using the directory. Words are looked up
+     * there after the in-memory cache and before being hyphenated. The first JVM to open a file appends new
+     * results to it until it reaches its maximum size; all others only read it. Only hyphenators created
+     * afterwards use the setting; {@code null} disables the persistent caches, leaving their files in place.
+     *
+     * @param directory the directory of the cache files, or {@code null}
+     * @param maxBytesPerDictionary the maximum size of a new cache file, at least 4 KiB
+     */
+    public static void setPersistentCache(Path directory, long maxBytesPerDictionary) {
+        registry.setPersistentCache(directory, maxBytesPerDictionary);
+    }
+
+    /**
+     * Returns the statistics of the result cache used for the locale.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @return the cache statistics, or {@code null} if no cache is in use for the locale
+     */
+    public static CacheStats getCacheStats(String locale) {
+        return registry.cacheStats(locale);
+    }
+
+    /**
+     * Enables or disables the recording of hyphenation metrics. Only iterators created while metrics are
+     * enabled record into them. Recording uses low-contention counters and can stay enabled under load.
+     *
+     * @param enabled whether to record metrics
+     */
+    public static void setMetricsEnabled(boolean enabled) {
+        registry.setMetricsEnabled(enabled);
+    }
+
+    /**
+     * Returns the metrics of the dictionary used for the locale: its load time, pattern count and footprint and, if
+     * metrics are enabled, the words hyphenated, breaks produced, pattern lookups, compound recursions and
+     * latencies. Locales sharing a dictionary share its metrics.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @return the metrics snapshot, or {@code null} if the locale's dictionary has not been loaded
+     */
+    public static MetricsSnapshot getMetrics(String locale) {
+        return registry.metricsSnapshot(locale);
+    }
+
+    /**
+     * Returns the metrics of all loaded dictionaries by locale, e.g. to export them into a metrics system.
+     *
+     * @return the metrics snapshots by locale
+     */
+    public static Map<String, MetricsSnapshot> getAllMetrics() {
+        Map<String, MetricsSnapshot> result = new HashMap<>();
+        for (String locale : registry.loaded().keySet()) {
+            MetricsSnapshot snapshot = registry.metricsSnapshot(locale);
+            if (snapshot != null)
+                result.put(locale, snapshot);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the dictionaries of the given locales right away, so that the first
+     * {@link #getInstance(String)} call for them does not pay for the loading.
+     * Unknown locales are ignored.
+     *
+     * @param locales the locale identifiers (e.g. "en-US")
+     */
+    public static void preload(String... locales) {
+        for (String locale : locales) {
+            getOrLoadDictionary(locale);
+        }
+    }
+
+    /**
+     * Starts loading the dictionaries of the given locales on the executor, several of them in parallel, and
+     * returns right away. {@link #getInstance(String)} calls for a locale that is still loading wait for it.
+     * Unknown locales are ignored.
+     *
+     * @param executor the executor to parse the dictionaries on, e.g. {@link ForkJoinPool#commonPool()}
+     * @param locales the locale identifiers (e.g. "en-US")
+     * @return a future completed once all the dictionaries are loaded (or failed to load)
+     */
+    public static CompletableFuture<Void> preloadAsync(Executor executor, String... locales) {
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[locales.length];
+        for (int i = 0; i < locales.length; i++) {
+            loads[i] = registry.load(locales[i], executor);
+        }
+        return CompletableFuture.allOf(loads);
+    }
+
+    /**
+     * Starts loading all known dictionaries on the executor, several of them in parallel.
+     *
+     * @param executor the executor to parse the dictionaries on
+     * @return a future completed once all the dictionaries are loaded (or failed to load)
+     * @see #preloadAsync(Executor, String...)
+     */
+    public static CompletableFuture<Void> preloadAllAsync(Executor executor) {
+        return preloadAsync(executor, registry.entries().keySet().toArray(new String[0]));
+    }
+
+    /**
+     * Starts loading all known dictionaries on the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @return a future completed once all the dictionaries are loaded (or failed to load)
+     */
+    public static CompletableFuture<Void> preloadAllAsync() {
+        return preloadAllAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a handle on the readiness of the locale's dictionary. If the dictionary is neither loaded nor
+     * loading, its loading is started on the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param locale the locale identifier (e.g. "en-US")
+     * @return a future completed with {@code true} once the dictionary is loaded, or with {@code false}
+     * if there is no dictionary for the locale or it cannot be loaded
+     */
+    public static CompletableFuture<Boolean> whenReady(String locale) {
+        return registry.load(locale, ForkJoinPool.commonPool()).thenApply(Objects::nonNull);
+    }
+
+    /**
+     * Reads dictionaries from the directory, in preference to the bundled ones, and reloads them whenever
+     * their files change. The directory is laid out like the {@code hyphen} resources, e.g. {@code ro/ro.dic};
+     * a compiled counterpart (see {@link HyphenDictCompiler}) is used if it is not older than the text file.
+     * <p>
+     * Changed files are parsed in the background and the new dictionary is swapped in only once it has loaded,
+     * so hyphenation never waits for a reload and a broken file leaves the previous dictionary in place.
+     * Iterators and hyphenators obtained before a swap keep using the dictionary they were created with.
+     * Dictionaries already loaded from the bundled resources are reloaded from the directory right away.
+     * Watching a directory stops watching the previous one.
+     *
+     * @param directory the directory of dictionaries
+     * @return a handle that stops watching the directory when closed; dictionaries loaded from it stay in use
+     * @throws IOException if the directory cannot be watched
+     */
+    public static synchronized Closeable watchDirectory(Path directory) throws IOException {
+        DictionaryWatcher previous = watcher;
+        if (previous != null)
+            previous.close();
+        watcher = new DictionaryWatcher(directory, registry);
+        logger.info("Watching dictionaries in {}", watcher.directory());
+        return watcher;
+    }
 
     /**
      * Builds a new {@link HyphenationIterator} instance from provided input stream
@@ -87,59 +423,103 @@ public class Hypherator {
     }
 
     /**
-     * Loads all dictionaries from the all.json resource file.
-     * 
-     * @throws IOException if there's an error loading the dictionaries
+     * Reads the all.json resource file and indexes its dictionaries by locale, without loading them.
+     *
+     * @return the dictionary entries by locale
+     * @throws IOException if the index cannot be read
      */
-    protected static void loadDictionaries() throws IOException {
+    protected static Map<String, DictionaryEntry> loadIndex() throws IOException {
         try (InputStream is = Hypherator.class.getResourceAsStream(ALL_JSON_PATH)) {
             if (is == null) {
                 throw new IOException("Resource not found: " + ALL_JSON_PATH);
             }
 
             ObjectMapper objectMapper = new ObjectMapper();
-            List<DictionaryEntry> entries = objectMapper.readValue(is, new TypeReference<List<DictionaryEntry>>() {});
+            List<DictionaryEntry> allEntries = objectMapper.readValue(is, new TypeReference<List<DictionaryEntry>>() {});
 
-            int dictionaryCount = 0;
-            int localeCount = 0;
-
-            for (DictionaryEntry entry : entries) {
+            Map<String, DictionaryEntry> entries = new HashMap<>();
+            for (DictionaryEntry entry : allEntries) {
                 if (entry.getLocations() == null || entry.getLocations().isEmpty() || entry.getLocales() == null || entry.getLocales().isEmpty()) {
                     continue;
                 }
-
-                String location = entry.getLocations().get(0);
-                String resourcePath = "/hyphen/" + location;
-
-                // Load the dictionary using HyphenDictBuilder
-                try {
-                    logger.info("Loading dictionary: {} {}", resourcePath, entry.getLocales());
-                    HyphenDict dict = loadDictionaryFromResource(resourcePath);
-                    dict.hyphen = entry.getHyphen();
-                    dictionaryCount++;
-
-                    // Add dictionary for each locale
-                    for (String locale : entry.getLocales()) {
-                        dictionaries.put(locale, dict);
-                        localeCount++;
-                    }
-                } catch (IOException e) {
-                    logger.warn("Failed to load dictionary: {}", resourcePath, e);
+                for (String locale : entry.getLocales()) {
+                    entries.put(locale, entry);
                 }
             }
+            logger.info("Found dictionaries for {} locales", entries.size());
+            return entries;
+        }
+    }
 
-            logger.info("Loaded {} dictionaries for {} locales", dictionaryCount, localeCount);
+    private static void watchFromProperty(String property) {
+        if (property == null || property.isBlank()) {
+            return;
+        }
+        try {
+            watchDirectory(Paths.get(property.trim()));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot watch dictionary directory: {}", property, e);
+        }
+    }
+
+    private static void preloadFromProperty(String property, boolean async) {
+        if (property == null || property.isBlank()) {
+            return;
+        }
+        String[] locales = PRELOAD_ALL.equals(property.trim())
+                ? registry.entries().keySet().toArray(new String[0])
+                : property.split(",");
+        if (async) {
+            // not waited for: the loads call back into this class, so they only proceed once it is initialized
+            preloadAsync(ForkJoinPool.commonPool(), locales);
+        } else {
+            preload(locales);
         }
     }
 
     /**
-     * Loads a dictionary from a resource path.
+     * Loads all dictionaries registered in the all.json resource file that have not been loaded yet,
+     * in parallel on the common fork-join pool.
+     */
+    protected static void loadDictionaries() {
+        preloadAllAsync().join();
+        logger.info("Loaded dictionaries for {} locales", registry.loaded().size());
+    }
+
+    private static HyphenDict getOrLoadDictionary(String locale) {
+        return registry.get(locale);
+    }
+
+    private static HyphenDict loadDictionary(DictionaryEntry entry) throws IOException {
+        DictionaryWatcher current = watcher;
+        if (current != null && current.isOpen()) {
+            HyphenDict dict = DictionaryWatcher.load(current.directory(), entry.getLocations().get(0));
+            if (dict != null)
+                return dict.withHyphen(entry.getHyphen());
+        }
+        return loadDictionaryFromResource("/hyphen/" + entry.getLocations().get(0)).withHyphen(entry.getHyphen());
+    }
+
+    /**
+     * Loads a dictionary from a resource path. If a compiled counterpart of the dictionary
+     * (see {@link HyphenDictCompiler}) is available, it is used instead of parsing the text file.
      * 
      * @param resourcePath the path to the dictionary resource
      * @return the loaded dictionary
      * @throws IOException if there's an error loading the dictionary
      */
     protected static HyphenDict loadDictionaryFromResource(String resourcePath) throws IOException {
+        String compiledPath = HyphenDictCompiler.compiledLocation(resourcePath);
+        try (InputStream is = Hypherator.class.getResourceAsStream(compiledPath)) {
+            if (is != null) {
+                try {
+                    return HyphenDictBuilder.fromBinaryStream(is);
+                } catch (IOException e) {
+                    logger.warn("Failed to load compiled dictionary {}, parsing {} instead", compiledPath, resourcePath, e);
+                }
+            }
+        }
+
         try (InputStream is = Hypherator.class.getResourceAsStream(resourcePath)) {
             if (is == null) {
                 throw new IOException("Resource not found: " + resourcePath);
@@ -151,11 +531,11 @@ public class Hypherator {
     }
 
     protected Map<String, HyphenDict> getDictionaries() {
-        return dictionaries;
+        return registry.loaded();
     }
 
     protected HyphenDict getDictionary(String locale) {
-        return dictionaries.get(locale);
+        return getOrLoadDictionary(locale);
     }
 
 }
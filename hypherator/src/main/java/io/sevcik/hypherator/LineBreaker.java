@@ -0,0 +1,300 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.Line;
+import io.sevcik.hypherator.dto.Pair;
+import io.sevcik.hypherator.dto.PotentialBreak;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Breaks paragraphs into lines, choosing the breaks of the whole paragraph together (total fit, in the manner
+ * of Knuth and Plass) rather than filling one line after another.
+ * <p>
+ * A paragraph is a sequence of tokens (words) separated by spaces that can stretch and shrink. Every line is
+ * given demerits from how much its spaces have to stretch or shrink, plus a penalty for ending with a
+ * hyphenated token that is lower for breaks of higher priority, and the breaks with the lowest total demerits
+ * win. A token is only hyphenated when it overflows a line, and the widths of tokens and their parts are
+ * measured once per paragraph.
+ * <p>
+ * A {@code LineBreaker} keeps no state between paragraphs and is thread-safe if its width measure is.
+ */
+public final class LineBreaker {
+    /**
+     * Measures the width of a text in the units of the line widths.
+     */
+    @FunctionalInterface
+    public interface WidthMeasure {
+        double width(String text);
+    }
+
+    private static final double INFINITE_BADNESS = 10000;
+    // added to the demerits of a line that overflows even when broken at its shortest
+    private static final double OVERFULL_DEMERITS = 1e12;
+
+    private final Hyphenator hyphenator;
+    private final WidthMeasure measure;
+    private final String hyphen;
+    private double spaceStretch = 0.5;
+    private double spaceShrink = 1.0 / 3;
+    private double linePenalty = 10;
+    private double hyphenPenalty = 50;
+    private double consecutiveHyphenDemerits = 3000;
+
+    public LineBreaker(Hyphenator hyphenator, WidthMeasure measure) {
+        this.hyphenator = hyphenator;
+        this.measure = measure;
+        this.hyphen = hyphenator.getHyphen() != null ? hyphenator.getHyphen() : "-";
+    }
+
+    /**
+     * Sets how much a space can stretch and shrink, as fractions of its width. Defaults to 1/2 and 1/3.
+     */
+    public void setSpaceElasticity(double stretch, double shrink) {
+        this.spaceStretch = stretch;
+        this.spaceShrink = shrink;
+    }
+
+    /**
+     * Sets the demerits added to every line, favouring fewer lines. Defaults to 10.
+     */
+    public void setLinePenalty(double linePenalty) {
+        this.linePenalty = linePenalty;
+    }
+
+    /**
+     * Sets the penalty of a hyphenated line ending at a break of the lowest priority; breaks of the highest
+     * priority cost a ninth of it. Defaults to 50.
+     */
+    public void setHyphenPenalty(double hyphenPenalty) {
+        this.hyphenPenalty = hyphenPenalty;
+    }
+
+    /**
+     * Sets the demerits added for two hyphenated lines in a row. Defaults to 3000.
+     */
+    public void setConsecutiveHyphenDemerits(double consecutiveHyphenDemerits) {
+        this.consecutiveHyphenDemerits = consecutiveHyphenDemerits;
+    }
+
+    /**
+     * Breaks the paragraph into lines.
+     *
+     * @param tokens the words of the paragraph
+     * @param lineWidths the widths of the first lines; the last width applies to all following lines
+     * @return the lines of the paragraph
+     */
+    public List<Line> breakLines(List<String> tokens, double... lineWidths) {
+        if (lineWidths.length == 0)
+            throw new IllegalArgumentException("At least one line width is required");
+        if (tokens.isEmpty())
+            return Collections.emptyList();
+        return new Paragraph(tokens, lineWidths).breakLines();
+    }
+
+    /**
+     * A feasible break: the end of one line and the start of the next, with the best way to get there.
+     */
+    private static final class Node {
+        final int token;
+        final int offset;
+        // rest of the token if it is hyphenated at this break, else null
+        final String piece;
+        final PackedBreaks pieceBreaks;
+        final int lines;
+        final double demerits;
+        final Node previous;
+        // the line ending at this break
+        final int lastToken;
+        final String lastText;
+        final double width;
+        final double ratio;
+
+        Node(int token, int offset, String piece, PackedBreaks pieceBreaks, int lines, double demerits, Node previous,
+             int lastToken, String lastText, double width, double ratio) {
+            this.token = token;
+            this.offset = offset;
+            this.piece = piece;
+            this.pieceBreaks = pieceBreaks;
+            this.lines = lines;
+            this.demerits = demerits;
+            this.previous = previous;
+            this.lastToken = lastToken;
+            this.lastText = lastText;
+            this.width = width;
+            this.ratio = ratio;
+        }
+
+        boolean hyphenated() {
+            return lastText != null;
+        }
+    }
+
+    private final class Paragraph {
+        private final List<String> tokens;
+        private final double[] lineWidths;
+        private final double[] tokenWidths;
+        private final PackedBreaks[] tokenBreaks;
+        private final Map<String, Double> widths = new HashMap<>();
+        private final double spaceWidth;
+        // best nodes by position (token, offset) and line class
+        private final TreeMap<Long, Map<Integer, Node>> active = new TreeMap<>();
+
+        Paragraph(List<String> tokens, double[] lineWidths) {
+            this.tokens = tokens;
+            this.lineWidths = lineWidths;
+            this.tokenWidths = new double[tokens.size()];
+            Arrays.fill(tokenWidths, Double.NaN);
+            this.tokenBreaks = new PackedBreaks[tokens.size()];
+            this.spaceWidth = measure.width(" ");
+        }
+
+        List<Line> breakLines() {
+            register(new Node(0, 0, null, null, 0, 0, null, -1, null, 0, 0));
+            Node best = null;
+            while (!active.isEmpty()) {
+                for (Node node : active.pollFirstEntry().getValue().values()) {
+                    if (node.token == tokens.size()) {
+                        if (best == null || node.demerits < best.demerits)
+                            best = node;
+                    } else {
+                        extend(node);
+                    }
+                }
+            }
+
+            List<Line> lines = new ArrayList<>(best.lines);
+            for (Node node = best; node.previous != null; node = node.previous) {
+                lines.add(line(node.previous, node));
+            }
+            Collections.reverse(lines);
+            return lines;
+        }
+
+        /**
+         * Adds the lines starting at the node: after each token until one overflows, then at the breaks of that token.
+         */
+        private void extend(Node node) {
+            double lineWidth = lineWidths[Math.min(node.lines, lineWidths.length - 1)];
+            double width = 0;
+            int spaces = 0;
+            boolean found = false;
+            for (int j = node.token; j < tokens.size(); j++) {
+                boolean first = j == node.token;
+                String fragment = first && node.piece != null ? node.piece : tokens.get(j);
+                double before = first ? 0 : width + spaceWidth;
+                int spacesBefore = first ? 0 : spaces + 1;
+                double total = before + (first && node.piece != null ? width(fragment) : tokenWidth(j));
+                double ratio = ratio(total, lineWidth, spacesBefore, j == tokens.size() - 1);
+                if (ratio >= -1) {
+                    register(next(node, j + 1, 0, null, null, j, null, total, ratio, 0));
+                    found = true;
+                    width = total;
+                    spaces = spacesBefore;
+                    continue;
+                }
+
+                // the token overflows the line, so it is worth hyphenating
+                PackedBreaks breaks = first && node.piece != null ? node.pieceBreaks : tokenBreaks(j);
+                int offset = first ? node.offset : 0;
+                List<PotentialBreak> breakList = null;
+                for (int k = 0; k < breaks.size(); k++) {
+                    PotentialBreak potentialBreak = breaks.get(k);
+                    Pair<String, String> parts = hyphenator.applyBreak(fragment, potentialBreak);
+                    String left = parts.getFirst() + hyphen;
+                    double hyphenated = before + width(left);
+                    double hyphenatedRatio = ratio(hyphenated, lineWidth, spacesBefore, false);
+                    if (hyphenatedRatio < -1 && (found || k > 0))
+                        break;
+                    if (breakList == null)
+                        breakList = breaks.toList();
+                    PackedBreaks rest = PackedBreaks.of(hyphenator.getFurtherHyphenations(breakList, potentialBreak, parts.getSecond()));
+                    register(next(node, j, offset + breaks.position(k), parts.getSecond(), rest, j, left, hyphenated,
+                            hyphenatedRatio, hyphenPenalty * (10 - breaks.priority(k)) / 9));
+                    found = true;
+                }
+                if (!found) {
+                    // not even the first part of the token fits, so the line has to overflow
+                    register(next(node, j + 1, 0, null, null, j, null, total, ratio, 0));
+                }
+                return;
+            }
+        }
+
+        private Node next(Node previous, int token, int offset, String piece, PackedBreaks pieceBreaks, int lastToken,
+                          String lastText, double width, double ratio, double penalty) {
+            double badness = Math.min(INFINITE_BADNESS, 100 * Math.pow(Math.abs(ratio), 3));
+            double demerits = (linePenalty + badness) * (linePenalty + badness) + penalty * penalty;
+            if (lastText != null && previous.hyphenated())
+                demerits += consecutiveHyphenDemerits;
+            if (ratio < -1)
+                demerits += OVERFULL_DEMERITS;
+            return new Node(token, offset, piece, pieceBreaks, previous.lines + 1, previous.demerits + demerits, previous,
+                    lastToken, lastText, width, ratio);
+        }
+
+        private void register(Node node) {
+            long position = ((long) node.token << 32) | node.offset;
+            // lines past the last given width all have the same width, so their nodes compete with each other
+            int lineClass = Math.min(node.lines, lineWidths.length - 1);
+            Map<Integer, Node> nodes = active.computeIfAbsent(position, p -> new HashMap<>());
+            Node current = nodes.get(lineClass);
+            if (current == null || node.demerits < current.demerits)
+                nodes.put(lineClass, node);
+        }
+
+        private Line line(Node start, Node end) {
+            StringBuilder text = new StringBuilder();
+            for (int j = start.token; j <= end.lastToken; j++) {
+                if (j > start.token)
+                    text.append(' ');
+                if (j == end.lastToken && end.lastText != null)
+                    text.append(end.lastText);
+                else if (j == start.token && start.piece != null)
+                    text.append(start.piece);
+                else
+                    text.append(tokens.get(j));
+            }
+            return new Line(text.toString(), start.token, end.lastToken, end.hyphenated(), end.width, end.ratio);
+        }
+
+        private double ratio(double width, double lineWidth, int spaces, boolean last) {
+            if (width <= lineWidth) {
+                if (last)
+                    return 0;
+                double stretch = spaces * spaceWidth * spaceStretch;
+                if (stretch > 0)
+                    return (lineWidth - width) / stretch;
+                return width == lineWidth ? 0 : Double.POSITIVE_INFINITY;
+            }
+            double shrink = spaces * spaceWidth * spaceShrink;
+            return shrink > 0 ? (lineWidth - width) / shrink : Double.NEGATIVE_INFINITY;
+        }
+
+        private double tokenWidth(int token) {
+            if (Double.isNaN(tokenWidths[token]))
+                tokenWidths[token] = measure.width(tokens.get(token));
+            return tokenWidths[token];
+        }
+
+        private PackedBreaks tokenBreaks(int token) {
+            if (tokenBreaks[token] == null)
+                tokenBreaks[token] = hyphenator.hyphenate(tokens.get(token));
+            return tokenBreaks[token];
+        }
+
+        private double width(String text) {
+            Double width = widths.get(text);
+            if (width == null) {
+                width = measure.width(text);
+                widths.put(text, width);
+            }
+            return width;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.DictionaryEntry;
+
+import java.util.Locale;
+
+/**
+ * A locale resolved to its dictionary once, for callers that hyphenate many words of the same locale.
+ * <p>
+ * Resolving falls back from variants without a dictionary of their own to a more general one (e.g. from
+ * {@code de-AT-1996} to {@code de-AT}), which a handle does only once: its methods go straight to the
+ * dictionary. Handles are immutable and thread-safe, and always use the current dictionary of the locale,
+ * also after it has been reloaded (see {@link Hypherator#watchDirectory(java.nio.file.Path)}).
+ * <p>
+ * Get an instance with {@link Hypherator#resolve(String)} or {@link Hypherator#resolve(java.util.Locale)}.
+ */
+public final class LocaleHandle {
+    private final DictionaryRegistry registry;
+    private final DictionaryEntry entry;
+    private final String locale;
+
+    LocaleHandle(DictionaryRegistry registry, DictionaryEntry entry, String locale) {
+        this.registry = registry;
+        this.entry = entry;
+        this.locale = locale;
+    }
+
+    /**
+     * Returns the locale of the dictionary the handle was resolved to, as listed in the dictionary index.
+     */
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * Returns the thread-safe {@link Hyphenator} of the locale.
+     *
+     * @return the hyphenator, or {@code null} if the dictionary cannot be loaded
+     * @see Hypherator#getHyphenator(String)
+     */
+    public Hyphenator getHyphenator() {
+        HyphenDict dict = dictionary();
+        return dict != null ? registry.hyphenatorFor(dict) : null;
+    }
+
+    /**
+     * Creates a new {@link HyphenationIterator} for the locale.
+     *
+     * @return the iterator, or {@code null} if the dictionary cannot be loaded
+     * @see Hypherator#getInstance(String)
+     */
+    public HyphenationIterator newIterator() {
+        Hyphenator hyphenator = getHyphenator();
+        return hyphenator != null ? hyphenator.iterator() : null;
+    }
+
+    /**
+     * Creates a new {@link TextHyphenator} for the locale.
+     *
+     * @return the text hyphenator, or {@code null} if the dictionary cannot be loaded
+     * @see Hypherator#getTextHyphenator(String)
+     */
+    public TextHyphenator newTextHyphenator() {
+        HyphenDict dict = dictionary();
+        return dict != null
+                ? new TextHyphenator(dict, registry.cacheFor(dict), registry.metricsFor(dict), Locale.forLanguageTag(locale.replace('_', '-')))
+                : null;
+    }
+
+    private HyphenDict dictionary() {
+        return registry.load(entry, null).join();
+    }
+
+    @Override
+    public String toString() {
+        return locale;
+    }
+}
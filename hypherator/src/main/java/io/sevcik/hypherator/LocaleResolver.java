@@ -0,0 +1,144 @@
+package io.sevcik.hypherator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves locale identifiers to the locales that have a dictionary.
+ * <p>
+ * Identifiers are BCP-47 tags in any case, also with underscores (e.g. {@code de_AT}). A tag without a
+ * dictionary of its own falls back to ever less specific tags, e.g. {@code de-AT-1996}, {@code de-AT} and
+ * {@code de}, and finally to a dictionary of the same language. Of the dictionaries of a language, the one of
+ * the bare language is taken first, then the one of the language's main region - the region named like the
+ * language ({@code de-DE}, {@code fr-FR}) or listed in {@link #MAIN_REGIONS} ({@code en-US}) - and then the
+ * others in alphabetical order; dictionaries of another script than the one asked for ({@code sr-Latn} for
+ * {@code sr-Cyrl}) are never taken. The table of known tags is built once; every identifier looked up is
+ * remembered with its result, also if it has no dictionary, so that repeated lookups are a single map read.
+ */
+final class LocaleResolver {
+    // bounds the remembered identifiers, which may come from untrusted input
+    private static final int MAX_REMEMBERED = 4096;
+    private static final String NONE = "";
+    /**
+     * Main regions of the languages whose main region is not named like the language.
+     */
+    static final Map<String, String> MAIN_REGIONS = Map.of("en", "us", "sv", "se", "da", "dk", "el", "gr",
+            "cs", "cz", "sl", "si", "uk", "ua", "et", "ee", "ca", "es", "nb", "no");
+
+    // dictionary locale by canonical tag, and the canonical tags of every language in order of preference
+    private final Map<String, String> byTag = new HashMap<>();
+    private final Map<String, List<String>> byLanguage = new HashMap<>();
+    private final ConcurrentHashMap<String, String> resolved = new ConcurrentHashMap<>();
+
+    LocaleResolver(Iterable<String> locales) {
+        Map<String, String> sorted = new TreeMap<>();
+        for (String locale : locales) {
+            sorted.put(canonical(locale), locale);
+        }
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            String tag = entry.getKey();
+            byTag.put(tag, entry.getValue());
+            resolved.put(entry.getValue(), entry.getValue());
+            byLanguage.computeIfAbsent(language(tag), language -> new ArrayList<>()).add(tag);
+        }
+        for (Map.Entry<String, List<String>> entry : byLanguage.entrySet()) {
+            String language = entry.getKey();
+            String mainRegion = language + "-" + MAIN_REGIONS.getOrDefault(language, language);
+            // stable, so the others stay in alphabetical order
+            entry.getValue().sort(Comparator.comparingInt(tag -> tag.equals(language) ? 0 : tag.equals(mainRegion) ? 1 : 2));
+        }
+    }
+
+    /**
+     * Returns the locale whose dictionary serves the identifier, or {@code null} if there is none.
+     */
+    String resolve(String locale) {
+        String result = resolved.get(locale);
+        if (result == null) {
+            result = lookup(locale);
+            if (resolved.size() < MAX_REMEMBERED)
+                resolved.putIfAbsent(locale, result);
+        }
+        return result == NONE ? null : result;
+    }
+
+    /**
+     * Returns the locale whose dictionary serves the locale, or {@code null} if there is none.
+     */
+    String resolve(Locale locale) {
+        return resolve(locale.toLanguageTag());
+    }
+
+    private String lookup(String locale) {
+        for (String candidate : fallbacks(locale)) {
+            String result = byTag.get(candidate);
+            if (result != null)
+                return result;
+        }
+        String tag = canonical(locale);
+        String script = script(tag);
+        for (String candidate : byLanguage.getOrDefault(language(tag), List.of())) {
+            String candidateScript = script(candidate);
+            if (script.isEmpty() || candidateScript.isEmpty() || script.equals(candidateScript))
+                return byTag.get(candidate);
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the canonical tag of the identifier, followed by ever less specific tags.
+     */
+    static List<String> fallbacks(String locale) {
+        List<String> result = new ArrayList<>();
+        String tag = canonical(locale);
+        result.add(tag);
+        Locale parsed = Locale.forLanguageTag(tag);
+        String language = parsed.getLanguage();
+        if (language.isEmpty())
+            return result;
+        String script = parsed.getScript().toLowerCase(Locale.ROOT);
+        String region = parsed.getCountry().toLowerCase(Locale.ROOT);
+        String variant = parsed.getVariant().toLowerCase(Locale.ROOT).replace('_', '-');
+        addTag(result, language, script, region, variant);
+        addTag(result, language, script, region, "");
+        addTag(result, language, "", region, variant);
+        addTag(result, language, "", region, "");
+        addTag(result, language, script, "", "");
+        addTag(result, language, "", "", "");
+        return result;
+    }
+
+    private static void addTag(List<String> tags, String language, String script, String region, String variant) {
+        StringBuilder tag = new StringBuilder(language);
+        for (String subtag : new String[] {script, region, variant}) {
+            if (!subtag.isEmpty())
+                tag.append('-').append(subtag);
+        }
+        String value = tag.toString();
+        if (!tags.contains(value))
+            tags.add(value);
+    }
+
+    private static String canonical(String locale) {
+        String tag = locale.trim().replace('_', '-');
+        Locale parsed = Locale.forLanguageTag(tag);
+        if (!parsed.getLanguage().isEmpty())
+            tag = parsed.toLanguageTag();
+        return tag.toLowerCase(Locale.ROOT);
+    }
+
+    private static String script(String canonicalTag) {
+        return Locale.forLanguageTag(canonicalTag).getScript().toLowerCase(Locale.ROOT);
+    }
+
+    private static String language(String canonicalTag) {
+        int dash = canonicalTag.indexOf('-');
+        return dash < 0 ? canonicalTag : canonicalTag.substring(0, dash);
+    }
+}
@@ -0,0 +1,173 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.PotentialBreak;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, immutable hyphenation result of one word.
+ * <p>
+ * Break positions (the number of characters before the break) of words up to 64 characters are kept as
+ * bits of a single {@code long}, longer words fall back to an {@code int} array. Priorities are stored as
+ * nibbles, two per byte, in the order of the breaks. Rules are only kept for breaks with a non-standard
+ * replacement; all other breaks share the plain rules of their priority. {@link PotentialBreak} objects
+ * are only created by {@link #toList()}, when a caller asks for them.
+ */
+public final class PackedBreaks {
+    static final PackedBreaks EMPTY = new PackedBreaks(0, 0L, null, new byte[0], null);
+
+    private final int size;
+    // bit p is set if there is a break at position p; only used if positions is null
+    private final long mask;
+    private final int[] positions;
+    private final byte[] priorities;
+    // indexed by break, only present if at least one of the breaks carries a non-standard replacement
+    private final HyphenDict.BreakRule[] rules;
+
+    private PackedBreaks(int size, long mask, int[] positions, byte[] priorities, HyphenDict.BreakRule[] rules) {
+        this.size = size;
+        this.mask = mask;
+        this.positions = positions;
+        this.priorities = priorities;
+        this.rules = rules;
+    }
+
+    /**
+     * Packs the first {@code size} breaks of the given arrays, which must be sorted by position.
+     * The arrays are copied, so the caller can reuse them.
+     */
+    static PackedBreaks of(int size, int[] positions, int[] priorities, HyphenDict.BreakRule[] rules) {
+        if (size == 0)
+            return EMPTY;
+        byte[] packedPriorities = new byte[(size + 1) / 2];
+        HyphenDict.BreakRule[] replacementRules = null;
+        for (int i = 0; i < size; i++) {
+            packedPriorities[i >> 1] |= (byte) ((priorities[i] & 0xf) << ((i & 1) << 2));
+            if (rules[i] != null && rules[i].replacement != null) {
+                if (replacementRules == null)
+                    replacementRules = new HyphenDict.BreakRule[size];
+                replacementRules[i] = rules[i];
+            }
+        }
+
+        if (positions[size - 1] < Long.SIZE) {
+            long mask = 0L;
+            for (int i = 0; i < size; i++) {
+                mask |= 1L << positions[i];
+            }
+            return new PackedBreaks(size, mask, null, packedPriorities, replacementRules);
+        }
+        return new PackedBreaks(size, 0L, Arrays.copyOf(positions, size), packedPriorities, replacementRules);
+    }
+
+    /**
+     * Packs the given breaks, which must be sorted by position.
+     */
+    static PackedBreaks of(List<PotentialBreak> breaks) {
+        int size = breaks.size();
+        int[] positions = new int[size];
+        int[] priorities = new int[size];
+        HyphenDict.BreakRule[] rules = new HyphenDict.BreakRule[size];
+        for (int i = 0; i < size; i++) {
+            PotentialBreakImpl potentialBreak = (PotentialBreakImpl) breaks.get(i);
+            positions[i] = potentialBreak.position();
+            priorities[i] = potentialBreak.priority();
+            rules[i] = potentialBreak.breakRule();
+        }
+        return of(size, positions, priorities, rules);
+    }
+
+    /**
+     * Number of breaks.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of the k-th break.
+     */
+    public int position(int k) {
+        checkIndex(k);
+        if (positions != null)
+            return positions[k];
+        long remaining = mask;
+        for (int i = 0; i < k; i++) {
+            remaining &= remaining - 1;
+        }
+        return Long.numberOfTrailingZeros(remaining);
+    }
+
+    /**
+     * Returns the priority of the k-th break.
+     */
+    public int priority(int k) {
+        checkIndex(k);
+        return (priorities[k >> 1] >> ((k & 1) << 2)) & 0xf;
+    }
+
+    /**
+     * Returns whether the k-th break needs a non-standard replacement (e.g. {@code Schiffahrt -> Schiff-fahrt}).
+     */
+    public boolean hasReplacement(int k) {
+        checkIndex(k);
+        return rules != null && rules[k] != null;
+    }
+
+    /**
+     * Returns whether the positions fit into {@link #mask()}.
+     */
+    public boolean hasMask() {
+        return positions == null;
+    }
+
+    /**
+     * Returns the positions as a bit mask, bit p being set if there is a break at position p.
+     *
+     * @throws IllegalStateException if a break lies at position 64 or beyond
+     */
+    public long mask() {
+        if (positions != null)
+            throw new IllegalStateException("Breaks do not fit into a mask");
+        return mask;
+    }
+
+    /**
+     * Returns the object view of the k-th break, e.g. to {@link Hyphenator#applyBreak(String, PotentialBreak) apply} it.
+     */
+    public PotentialBreak get(int k) {
+        return new PotentialBreakImpl(position(k), priority(k), rule(k));
+    }
+
+    /**
+     * Returns the object view of the breaks, as produced by {@link Hyphenate#hyphenate(HyphenDict, String)}.
+     */
+    public List<PotentialBreak> toList() {
+        List<PotentialBreak> breaks = new ArrayList<>(size);
+        long remaining = mask;
+        for (int k = 0; k < size; k++) {
+            int position;
+            if (positions != null) {
+                position = positions[k];
+            } else {
+                position = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+            }
+            breaks.add(new PotentialBreakImpl(position, priority(k), rule(k)));
+        }
+        return breaks;
+    }
+
+    HyphenDict.BreakRule rule(int k) {
+        if (rules != null && rules[k] != null)
+            return rules[k];
+        return HyphenDict.BreakRule.of(priority(k));
+    }
+
+    private void checkIndex(int k) {
+        if (k < 0 || k >= size)
+            throw new IndexOutOfBoundsException("Break " + k + " out of " + size);
+    }
+}
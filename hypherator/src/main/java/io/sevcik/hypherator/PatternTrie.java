@@ -0,0 +1,241 @@
+package io.sevcik.hypherator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled, read-only character trie over the patterns of a single {@link HyphenDict} level.
+ * <p>
+ * Nodes are numbered in breadth-first order and stored in flat arrays: the outgoing edges of a node
+ * are a sorted slice of {@code edgeChars}/{@code edgeTargets}, and the break values carried by a
+ * pattern ending in a node are a slice of {@code outputOffsets}/{@code outputRuleIds}, the latter pointing
+ * into a small table of distinct break rules. Matching walks the trie from every start position and stops
+ * as soon as no pattern can extend further.
+ */
+final class PatternTrie {
+    static final int ROOT = 0;
+    static final int NO_NODE = -1;
+
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] outputStart;
+    private final int[] outputOffsets;
+    private final int[] outputRuleIds;
+    private final HyphenDict.BreakRule[] breakRules;
+    private final int maxPatternLength;
+
+    PatternTrie(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] outputStart, int[] outputOffsets,
+                int[] outputRuleIds, HyphenDict.BreakRule[] breakRules, int maxPatternLength) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.outputStart = outputStart;
+        this.outputOffsets = outputOffsets;
+        this.outputRuleIds = outputRuleIds;
+        this.breakRules = breakRules;
+        this.maxPatternLength = maxPatternLength;
+    }
+
+    /**
+     * Compiles the given rules into a trie. Break rules are canonical instances (see {@link HyphenDict.BreakRule#of(int)}),
+     * so the rule table only holds one entry per priority plus one per distinct non-standard (replacement) rule.
+     */
+    static PatternTrie build(Map<String, HyphenDict.Rule> rules) {
+        Node root = new Node();
+        int maxLength = 0;
+        for (HyphenDict.Rule rule : rules.values()) {
+            String match = rule.getMatch();
+            if (match == null || match.isEmpty())
+                continue;
+            Node node = root;
+            for (int i = 0; i < match.length(); i++) {
+                node = node.children.computeIfAbsent(match.charAt(i), c -> new Node());
+            }
+            node.rule = rule;
+            maxLength = Math.max(maxLength, match.length());
+        }
+
+        // Number the nodes breadth first, so that the children of every node occupy a contiguous slice
+        List<Node> nodes = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.id = nodes.size();
+            nodes.add(node);
+            queue.addAll(node.children.values());
+        }
+
+        int nodeCount = nodes.size();
+        int outputCount = 0;
+        for (Node node : nodes) {
+            if (node.rule != null)
+                outputCount += node.rule.breakRuleCount();
+        }
+
+        int[] edgeStart = new int[nodeCount + 1];
+        char[] edgeChars = new char[nodeCount - 1];
+        int[] edgeTargets = new int[nodeCount - 1];
+        int[] outputStart = new int[nodeCount + 1];
+        int[] outputOffsets = new int[outputCount];
+        int[] outputRuleIds = new int[outputCount];
+        List<HyphenDict.BreakRule> breakRules = new ArrayList<>();
+        Map<HyphenDict.BreakRule, Integer> ruleIds = new IdentityHashMap<>();
+
+        int edge = 0;
+        int output = 0;
+        for (Node node : nodes) {
+            edgeStart[node.id] = edge;
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                edgeChars[edge] = child.getKey();
+                edgeTargets[edge] = child.getValue().id;
+                edge++;
+            }
+            outputStart[node.id] = output;
+            if (node.rule != null) {
+                HyphenDict.BreakRule[] nodeRules = node.rule.breakRules;
+                for (int offset = 0; offset < nodeRules.length; offset++) {
+                    HyphenDict.BreakRule breakRule = nodeRules[offset];
+                    if (breakRule == null)
+                        continue;
+                    Integer ruleId = ruleIds.get(breakRule);
+                    if (ruleId == null) {
+                        ruleId = breakRules.size();
+                        breakRules.add(breakRule);
+                        ruleIds.put(breakRule, ruleId);
+                    }
+                    outputOffsets[output] = offset;
+                    outputRuleIds[output] = ruleId;
+                    output++;
+                }
+            }
+        }
+        edgeStart[nodeCount] = edge;
+        outputStart[nodeCount] = output;
+        return new PatternTrie(edgeStart, edgeChars, edgeTargets, outputStart, outputOffsets, outputRuleIds,
+                breakRules.toArray(new HyphenDict.BreakRule[0]), maxLength);
+    }
+
+    /**
+     * Follows the edge labelled {@code c} from {@code node}.
+     *
+     * @return the target node, or {@link #NO_NODE} if no pattern continues with {@code c}
+     */
+    int child(int node, char c) {
+        int from = edgeStart[node];
+        int to = edgeStart[node + 1];
+        if (to - from <= 8) {
+            for (int i = from; i < to; i++) {
+                if (edgeChars[i] == c)
+                    return edgeTargets[i];
+            }
+            return NO_NODE;
+        }
+        int index = Arrays.binarySearch(edgeChars, from, to, c);
+        return index >= 0 ? edgeTargets[index] : NO_NODE;
+    }
+
+    int outputStart(int node) {
+        return outputStart[node];
+    }
+
+    int outputEnd(int node) {
+        return outputStart[node + 1];
+    }
+
+    /**
+     * Position of the break relative to the start of the pattern, i.e. the number of pattern characters before it.
+     */
+    int outputOffset(int output) {
+        return outputOffsets[output];
+    }
+
+    HyphenDict.BreakRule outputRule(int output) {
+        return breakRules[outputRuleIds[output]];
+    }
+
+    int nodeCount() {
+        return edgeStart.length - 1;
+    }
+
+    int maxPatternLength() {
+        return maxPatternLength;
+    }
+
+    int edgeCount() {
+        return edgeChars.length;
+    }
+
+    int outputCount() {
+        return outputOffsets.length;
+    }
+
+    /**
+     * Number of patterns, i.e. of nodes some pattern ends in with at least one break value.
+     */
+    int patternCount() {
+        int count = 0;
+        for (int node = 0; node < nodeCount(); node++) {
+            if (outputStart[node + 1] > outputStart[node])
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Estimate of the heap taken by the trie arrays, in bytes. The break rules themselves are shared and not counted.
+     */
+    long footprint() {
+        return arrayBytes(4, edgeStart.length) + arrayBytes(2, edgeChars.length) + arrayBytes(4, edgeTargets.length)
+                + arrayBytes(4, outputStart.length) + arrayBytes(4, outputOffsets.length) + arrayBytes(4, outputRuleIds.length)
+                + arrayBytes(4, breakRules.length) + 48;
+    }
+
+    private static long arrayBytes(int elementSize, int length) {
+        // array header, rounded up to 8 bytes
+        return (16 + (long) elementSize * length + 7) & ~7L;
+    }
+
+    // raw arrays, used by HyphenDictBinary for serialization
+
+    int[] edgeStarts() {
+        return edgeStart;
+    }
+
+    char[] edgeChars() {
+        return edgeChars;
+    }
+
+    int[] edgeTargets() {
+        return edgeTargets;
+    }
+
+    int[] outputStarts() {
+        return outputStart;
+    }
+
+    int[] outputOffsets() {
+        return outputOffsets;
+    }
+
+    int[] outputRuleIds() {
+        return outputRuleIds;
+    }
+
+    HyphenDict.BreakRule[] breakRules() {
+        return breakRules;
+    }
+
+    private static class Node {
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        HyphenDict.Rule rule = null;
+        int id;
+    }
+}
@@ -0,0 +1,321 @@
+package io.sevcik.hypherator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hyphenation results of a single {@link HyphenDict} kept in a memory-mapped file, so that they survive
+ * restarts and are shared by all processes of a host using the same directory.
+ * <p>
+ * Every dictionary content has its own file, named by a hash of its patterns, so results of a changed
+ * dictionary are never mixed with those of the old one. The file holds a fixed-size open-addressing index
+ * followed by an append-only data area. Both are sized when the file is created and never grow; once either
+ * is full, new words are no longer stored. Words whose breaks need a non-standard replacement are not stored.
+ * <p>
+ * Lookups take no locks: records are written before the index slot pointing to them is published, so a
+ * reader finds either nothing or a complete record. The first process to open the file holds an exclusive
+ * lock on it for as long as it is open and is the only one appending to it; all others only read. Appends
+ * within that process are serialized. All values are big-endian:
+ * <pre>
+ * header: int MAGIC ("HYPC"), int VERSION, int slot count, int data capacity, int data end, int entry count
+ * index:  per slot int hash, int record offset (0 if empty)
+ * data:   per record int hash, short word length, short break count, char[] word, int[] breaks (position << 4 | priority)
+ * </pre>
+ */
+final class PersistentBreakCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PersistentBreakCache.class);
+
+    static final int MAGIC = 0x48595043;
+    static final int VERSION = 1;
+    static final String EXTENSION = ".hyc";
+    static final long MIN_SIZE = 4096;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int DATA_END = 16;
+    private static final int ENTRY_COUNT = 20;
+    // a reader retries mapping a file that is still being created at most this often
+    private static final long RETRY_NANOS = 1_000_000_000L;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private volatile MappedByteBuffer buffer;
+    private volatile long nextAttempt;
+    private int slotCount;
+    private int dataStart;
+    private int dataLimit;
+    // only used by the writer, guarded by this
+    private int dataEnd;
+    private int entryCount;
+    private volatile boolean writable;
+
+    private PersistentBreakCache(Path file, FileChannel channel, FileLock lock) {
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens the cache file of the dictionary in the directory, creating it with the given maximum size if it
+     * does not exist. An existing file keeps the size it was created with.
+     *
+     * @throws IOException if the file cannot be opened or created
+     */
+    static PersistentBreakCache open(Path directory, HyphenDict dict, long maxBytes) throws IOException {
+        if (maxBytes < MIN_SIZE)
+            throw new IllegalArgumentException("Persistent cache size must be at least " + MIN_SIZE + " bytes");
+        Files.createDirectories(directory);
+        Path file = directory.resolve(contentHash(dict) + EXTENSION);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // another cache of this process writes the file
+                lock = null;
+            }
+            PersistentBreakCache cache = new PersistentBreakCache(file, channel, lock);
+            if (lock != null) {
+                cache.initialize(Math.min(maxBytes, Integer.MAX_VALUE));
+            } else {
+                cache.map();
+            }
+            logger.debug("Opened persistent cache {} ({})", file, lock != null ? "writer" : "reader");
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a hash of the patterns and settings of the dictionary, the same for every load of the same data.
+     */
+    static String contentHash(HyphenDict dict) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                HyphenDictBinary.write(dict, out);
+            }
+            StringBuilder hash = new StringBuilder();
+            byte[] bytes = digest.digest();
+            for (int i = 0; i < 16; i++) {
+                hash.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16)).append(Character.forDigit(bytes[i] & 0xf, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Returns whether this instance appends to the file, as opposed to only reading it.
+     */
+    boolean isWriter() {
+        return lock != null;
+    }
+
+    /**
+     * Returns the stored breaks of the word, or {@code null} if the word is not stored.
+     */
+    PackedBreaks get(String word) {
+        ByteBuffer data = buffer;
+        if (data == null) {
+            data = retryMap();
+            if (data == null)
+                return null;
+        }
+        int hash = hash(word);
+        int mask = slotCount - 1;
+        for (int i = hash & mask, probes = 0; probes < slotCount; i = (i + 1) & mask, probes++) {
+            int slot = HEADER_SIZE + i * SLOT_SIZE;
+            int offset = (int) INT.getAcquire(data, slot + 4);
+            if (offset == 0)
+                return null;
+            if (data.getInt(slot) == hash && matches(data, offset, word))
+                return read(data, offset);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the breaks of the word, unless this instance only reads the file, the word is stored already,
+     * its breaks need a non-standard replacement or the file is full.
+     */
+    synchronized void put(String word, PackedBreaks breaks) {
+        if (!writable || word.length() > 0xffff)
+            return;
+        for (int k = 0; k < breaks.size(); k++) {
+            if (breaks.hasReplacement(k))
+                return;
+        }
+        int recordSize = RECORD_HEADER_SIZE + 2 * word.length() + 4 * breaks.size();
+        if (entryCount >= slotCount / 4 * 3 || dataEnd + recordSize > dataLimit)
+            return;
+
+        ByteBuffer data = buffer;
+        int hash = hash(word);
+        int mask = slotCount - 1;
+        int index = hash & mask;
+        int existing;
+        while ((existing = data.getInt(HEADER_SIZE + index * SLOT_SIZE + 4)) != 0) {
+            if (data.getInt(HEADER_SIZE + index * SLOT_SIZE) == hash && matches(data, existing, word))
+                return;
+            index = (index + 1) & mask;
+        }
+        int slot = HEADER_SIZE + index * SLOT_SIZE;
+
+        int offset = dataEnd;
+        data.putInt(offset, hash);
+        data.putShort(offset + 4, (short) word.length());
+        data.putShort(offset + 6, (short) breaks.size());
+        for (int i = 0; i < word.length(); i++) {
+            data.putChar(offset + RECORD_HEADER_SIZE + 2 * i, word.charAt(i));
+        }
+        int breaksStart = offset + RECORD_HEADER_SIZE + 2 * word.length();
+        for (int k = 0; k < breaks.size(); k++) {
+            data.putInt(breaksStart + 4 * k, breaks.position(k) << 4 | breaks.priority(k));
+        }
+        // the data end is moved before the record is published, so a crash can only leak space
+        dataEnd = offset + recordSize;
+        INT.setRelease(data, DATA_END, dataEnd);
+        data.putInt(slot, hash);
+        INT.setRelease(data, slot + 4, offset);
+        entryCount++;
+        INT.setRelease(data, ENTRY_COUNT, entryCount);
+    }
+
+    /**
+     * Stops appending and releases the file. Results already mapped stay readable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writable = false;
+        try {
+            if (lock != null)
+                lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void initialize(long maxBytes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        boolean valid = channel.size() >= HEADER_SIZE && channel.read(header, 0) == HEADER_SIZE
+                && header.getInt(0) == MAGIC && header.getInt(4) == VERSION && channel.size() == fileSize(header);
+        if (!valid) {
+            // new, or left incomplete or by another version: start over
+            int slots = Math.max(16, Integer.highestOneBit((int) Math.min(maxBytes / 48, 1 << 26)));
+            int dataCapacity = (int) (maxBytes - HEADER_SIZE - (long) slots * SLOT_SIZE);
+            channel.truncate(0);
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE + dataCapacity);
+            data.putInt(4, VERSION);
+            data.putInt(8, slots);
+            data.putInt(12, dataCapacity);
+            data.putInt(DATA_END, HEADER_SIZE + slots * SLOT_SIZE);
+            data.putInt(ENTRY_COUNT, 0);
+            INT.setRelease(data, 0, MAGIC);
+        }
+        map();
+        dataEnd = buffer.getInt(DATA_END);
+        entryCount = buffer.getInt(ENTRY_COUNT);
+        writable = dataEnd >= dataStart && dataEnd <= dataLimit;
+    }
+
+    private void map() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() < HEADER_SIZE || channel.read(header, 0) < HEADER_SIZE
+                || header.getInt(0) != MAGIC || header.getInt(4) != VERSION || channel.size() < fileSize(header)) {
+            // being created by the writer
+            nextAttempt = System.nanoTime() + RETRY_NANOS;
+            return;
+        }
+        slotCount = header.getInt(8);
+        dataStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+        dataLimit = dataStart + header.getInt(12);
+        FileChannel.MapMode mode = lock != null ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        buffer = channel.map(mode, 0, dataLimit);
+    }
+
+    private synchronized ByteBuffer retryMap() {
+        if (buffer == null && channel.isOpen() && System.nanoTime() - nextAttempt >= 0) {
+            try {
+                map();
+            } catch (IOException e) {
+                logger.debug("Cannot map persistent cache {}", file, e);
+                nextAttempt = System.nanoTime() + RETRY_NANOS;
+            }
+        }
+        return buffer;
+    }
+
+    private static long fileSize(ByteBuffer header) {
+        int slots = header.getInt(8);
+        int dataCapacity = header.getInt(12);
+        if (slots <= 0 || Integer.bitCount(slots) != 1 || dataCapacity <= 0)
+            return -1;
+        return HEADER_SIZE + (long) slots * SLOT_SIZE + dataCapacity;
+    }
+
+    private boolean matches(ByteBuffer data, int offset, String word) {
+        if (offset < dataStart || offset + RECORD_HEADER_SIZE > dataLimit)
+            return false;
+        int length = data.getShort(offset + 4) & 0xffff;
+        if (length != word.length() || offset + RECORD_HEADER_SIZE + 2 * length > dataLimit)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (data.getChar(offset + RECORD_HEADER_SIZE + 2 * i) != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private PackedBreaks read(ByteBuffer data, int offset) {
+        int count = data.getShort(offset + 6) & 0xffff;
+        int breaksStart = offset + RECORD_HEADER_SIZE + 2 * (data.getShort(offset + 4) & 0xffff);
+        if (breaksStart + 4 * count > dataLimit)
+            return null;
+        int[] positions = new int[count];
+        int[] priorities = new int[count];
+        for (int k = 0; k < count; k++) {
+            int value = data.getInt(breaksStart + 4 * k);
+            positions[k] = value >>> 4;
+            priorities[k] = value & 0xf;
+        }
+        return PackedBreaks.of(count, positions, priorities, new HyphenDict.BreakRule[count]);
+    }
+
+    private static int hash(String word) {
+        int h = word.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,245 @@
+package io.sevcik.hypherator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.text.BreakIterator;
+import java.util.Locale;
+
+/**
+ * Hyphenates running text, marking the break points of every word.
+ * <p>
+ * The text is streamed from a {@link Reader} (or a {@link CharSequence}) to a {@link Writer}: words are
+ * found by the word rules of the locale ({@link BreakIterator#getWordInstance(Locale)}), with letters joined
+ * by an apostrophe or a middle dot kept together as in the Unicode word rules (UAX #29), so that e.g.
+ * {@code l'homme}, {@code aujourd’hui} or {@code col·legi} are hyphenated as one word. Everything else is
+ * copied through unchanged, and a marker - a soft hyphen (U+00AD) by default - is written at every break of
+ * sufficient priority. Only one read buffer and one word buffer are kept, so arbitrarily large inputs are
+ * processed in constant memory. Words too short to be hyphenated and runs of non-space characters longer
+ * than {@value #MAX_WORD_LENGTH} characters are copied as they are. Breaks that need a non-standard
+ * replacement (e.g. {@code Schiffahrt -> Schiff-fahrt}) cannot be expressed by a marker and are not marked.
+ * <p>
+ * Instances keep their buffers between calls and are therefore not thread-safe; create one per thread
+ * with {@link Hypherator#getTextHyphenator(String)}.
+ */
+public class TextHyphenator {
+    public static final String SOFT_HYPHEN = "\u00AD";
+    public static final int MAX_WORD_LENGTH = 256;
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final HyphenDict dict;
+    private final Hyphenate hyphenate;
+    private final BreakCache cache;
+    private final int minWordLength;
+
+    private final BreakIterator wordIterator;
+
+    private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+    // the current run of non-space characters, split into words once it is complete
+    private final char[] word = new char[MAX_WORD_LENGTH];
+    private final CharBuffer wordView = CharBuffer.wrap(word);
+    private int wordLength = 0;
+    private boolean inWord = false;
+    // the run contains characters other than letters, so it has to be split by the word rules
+    private boolean mixed = false;
+    // the current run is longer than the word buffer and is copied through
+    private boolean overlong = false;
+
+    private String marker = SOFT_HYPHEN;
+    private int priorityFilter = 1;
+
+    TextHyphenator(HyphenDict dict, BreakCache cache) {
+        this(dict, cache, null, Locale.ROOT);
+    }
+
+    TextHyphenator(HyphenDict dict, BreakCache cache, HyphenationMetrics metrics, Locale locale) {
+        this.dict = dict;
+        this.wordIterator = BreakIterator.getWordInstance(locale);
+        this.hyphenate = new HyphenateImpl(metrics);
+        this.cache = cache;
+        int leftHyphenMin = dict.leftHyphenMin > 0 ? dict.leftHyphenMin : HyphenateImpl.DEFAULT_HYPHEN_MIN;
+        int rightHyphenMin = dict.rightHyphenMin > 0 ? dict.rightHyphenMin : HyphenateImpl.DEFAULT_HYPHEN_MIN;
+        this.minWordLength = leftHyphenMin + rightHyphenMin;
+    }
+
+    /**
+     * Sets the string written at break points, {@link #SOFT_HYPHEN} by default.
+     */
+    public void setMarker(String marker) {
+        if (marker == null)
+            throw new IllegalArgumentException("Marker cannot be null");
+        this.marker = marker;
+    }
+
+    /**
+     * Sets the urgency level, with the same meaning as {@link HyphenationIterator#setUrgency(int)}.
+     */
+    public void setUrgency(int urgency) {
+        this.priorityFilter = 10 - urgency;
+    }
+
+    /**
+     * Copies the text from the reader to the writer, marking the breaks of every word. Neither of them is closed.
+     *
+     * @throws IOException if reading or writing fails
+     */
+    public void hyphenate(Reader in, Writer out) throws IOException {
+        try {
+            int read;
+            while ((read = in.read(readBuffer)) != -1) {
+                process(readBuffer, read, out);
+            }
+            endWord(out);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Writes the text to the writer, marking the breaks of every word.
+     *
+     * @throws IOException if writing fails
+     */
+    public void hyphenate(CharSequence text, Writer out) throws IOException {
+        try {
+            for (int start = 0; start < text.length(); start += readBuffer.length) {
+                int length = Math.min(readBuffer.length, text.length() - start);
+                for (int i = 0; i < length; i++) {
+                    readBuffer[i] = text.charAt(start + i);
+                }
+                process(readBuffer, length, out);
+            }
+            endWord(out);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the text with the breaks of every word marked.
+     */
+    public String hyphenate(CharSequence text) {
+        StringWriter out = new StringWriter(text.length() + text.length() / 4);
+        try {
+            hyphenate(text, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private void process(char[] chars, int length, Writer out) throws IOException {
+        // start of the pending run of non-word characters
+        int textStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (!Character.isWhitespace(c)) {
+                if (!inWord) {
+                    out.write(chars, textStart, i - textStart);
+                    inWord = true;
+                }
+                mixed |= !isWordChar(c);
+                appendToWord(c, out);
+            } else if (inWord) {
+                endWord(out);
+                textStart = i;
+            }
+        }
+        if (!inWord) {
+            out.write(chars, textStart, length - textStart);
+        }
+    }
+
+    private void appendToWord(char c, Writer out) throws IOException {
+        if (overlong) {
+            out.write(c);
+        } else if (wordLength == word.length) {
+            out.write(word, 0, wordLength);
+            out.write(c);
+            wordLength = 0;
+            overlong = true;
+        } else {
+            word[wordLength++] = c;
+        }
+    }
+
+    private void endWord(Writer out) throws IOException {
+        if (!mixed) {
+            writeWord(0, wordLength, out);
+        } else if (wordLength > 0) {
+            // punctuation attached to words, or letters joined by apostrophes and the like
+            wordIterator.setText(new String(word, 0, wordLength));
+            int start = wordIterator.first();
+            for (int end = wordIterator.next(); end != BreakIterator.DONE; start = end, end = wordIterator.next()) {
+                if (isWordChar(word[start])) {
+                    // the JDK rules split at some of these joiners
+                    while (end + 1 < wordLength && isJoiner(word[end]) && isWordChar(word[end + 1])) {
+                        end = wordIterator.following(end + 1);
+                    }
+                    writeWord(start, end, out);
+                } else {
+                    out.write(word, start, end - start);
+                }
+            }
+        }
+        reset();
+    }
+
+    private void writeWord(int start, int end, Writer out) throws IOException {
+        if (end - start >= minWordLength) {
+            writeHyphenated(start, end, out);
+        } else {
+            out.write(word, start, end - start);
+        }
+    }
+
+    private void writeHyphenated(int start, int end, Writer out) throws IOException {
+        PackedBreaks breaks;
+        if (cache != null) {
+            String key = new String(word, start, end - start);
+            breaks = cache.get(key);
+            if (breaks == null) {
+                breaks = hyphenate.hyphenatePacked(dict, key);
+                cache.put(key, breaks);
+            }
+        } else {
+            wordView.clear().limit(end).position(start);
+            breaks = hyphenate.hyphenatePacked(dict, wordView);
+        }
+
+        int written = start;
+        for (int k = 0; k < breaks.size(); k++) {
+            if (breaks.priority(k) < priorityFilter || breaks.hasReplacement(k))
+                continue;
+            int position = start + breaks.position(k);
+            out.write(word, written, position - written);
+            out.write(marker);
+            written = position;
+        }
+        out.write(word, written, end - written);
+    }
+
+    private void reset() {
+        wordLength = 0;
+        inWord = false;
+        mixed = false;
+        overlong = false;
+    }
+
+    /**
+     * Returns whether the character joins the letters around it into one word (MidLetter and MidNumLet of UAX #29).
+     */
+    private static boolean isJoiner(char c) {
+        return c == '\'' || c == '\u2019' || c == '\u00B7' || c == '\u2027';
+    }
+
+    private static boolean isWordChar(char c) {
+        if (Character.isLetter(c) || Character.isSurrogate(c))
+            return true;
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+}
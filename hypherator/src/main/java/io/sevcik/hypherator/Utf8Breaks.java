@@ -0,0 +1,70 @@
+package io.sevcik.hypherator;
+
+import io.sevcik.hypherator.dto.PotentialBreak;
+
+/**
+ * Hyphenation result of a word given as UTF-8 bytes, with the break positions both in characters and in bytes.
+ * <p>
+ * Character positions are those of the word decoded to Java characters (UTF-16), as in {@link PackedBreaks};
+ * byte offsets count the bytes of the word before the break. For words of single-byte characters both are the
+ * same and no offsets are stored.
+ */
+public final class Utf8Breaks {
+    private final PackedBreaks breaks;
+    // byte offset of every break, or null if they equal the character positions
+    private final int[] byteOffsets;
+
+    Utf8Breaks(PackedBreaks breaks, int[] byteOffsets) {
+        this.breaks = breaks;
+        this.byteOffsets = byteOffsets;
+    }
+
+    /**
+     * Number of breaks.
+     */
+    public int size() {
+        return breaks.size();
+    }
+
+    /**
+     * Returns the position of the k-th break in characters.
+     */
+    public int charPosition(int k) {
+        return breaks.position(k);
+    }
+
+    /**
+     * Returns the position of the k-th break in bytes, from the first byte of the word.
+     */
+    public int byteOffset(int k) {
+        return byteOffsets != null ? byteOffsets[k] : breaks.position(k);
+    }
+
+    /**
+     * Returns the priority of the k-th break.
+     */
+    public int priority(int k) {
+        return breaks.priority(k);
+    }
+
+    /**
+     * Returns whether the k-th break needs a non-standard replacement (e.g. {@code Schiffahrt -> Schiff-fahrt}).
+     */
+    public boolean hasReplacement(int k) {
+        return breaks.hasReplacement(k);
+    }
+
+    /**
+     * Returns the object view of the k-th break, positioned in characters.
+     */
+    public PotentialBreak get(int k) {
+        return breaks.get(k);
+    }
+
+    /**
+     * Returns the breaks positioned in characters.
+     */
+    public PackedBreaks chars() {
+        return breaks;
+    }
+}
@@ -0,0 +1,147 @@
+package io.sevcik.hypherator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable buffer holding a word decoded from UTF-8 bytes, together with the byte offset of every character.
+ * <p>
+ * Words are decoded straight from a heap or direct {@link ByteBuffer} without going through a {@code String}.
+ * Words of single-byte (ASCII) characters, the bulk of Latin-script text, take a fast path that copies the
+ * bytes as they are and needs no offset table. Malformed sequences are decoded as U+FFFD, one per byte.
+ * The buffer grows to the longest word seen and is then reused for all following words.
+ */
+final class Utf8Word implements CharSequence {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private char[] chars = new char[32];
+    // byte offset of every character from the start of the word, plus the byte length; unused if ascii
+    private int[] byteOffsets = new int[33];
+    private int length = 0;
+    private int byteLength = 0;
+    private boolean ascii = true;
+
+    /**
+     * Decodes {@code buffer[from, to)}, replacing the previous content. The position of the buffer is not changed.
+     */
+    void load(ByteBuffer buffer, int from, int to) {
+        byteLength = to - from;
+        if (chars.length < byteLength) {
+            chars = new char[Math.max(byteLength, chars.length * 2)];
+        }
+        int index = from;
+        int count = 0;
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int base = buffer.arrayOffset();
+            while (index < to && array[base + index] >= 0) {
+                chars[count++] = (char) array[base + index++];
+            }
+        } else {
+            byte b;
+            while (index < to && (b = buffer.get(index)) >= 0) {
+                chars[count++] = (char) b;
+                index++;
+            }
+        }
+        ascii = index == to;
+        if (!ascii) {
+            count = decode(buffer, from, index, to, count);
+        }
+        length = count;
+    }
+
+    /**
+     * Returns whether the word consists of single-byte characters only, so that byte offsets equal character positions.
+     */
+    boolean isAscii() {
+        return ascii;
+    }
+
+    /**
+     * Returns the byte offset, from the start of the word, of the character at the index; the byte length of the
+     * word for the index {@link #length()}.
+     */
+    int byteOffset(int index) {
+        return ascii ? index : byteOffsets[index];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Decodes the rest of the word, from the first multi-byte sequence at {@code index} on.
+     *
+     * @return the number of characters of the whole word
+     */
+    private int decode(ByteBuffer buffer, int from, int index, int to, int count) {
+        if (byteOffsets.length < byteLength + 1) {
+            byteOffsets = new int[Math.max(byteLength + 1, byteOffsets.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            byteOffsets[i] = i;
+        }
+        while (index < to) {
+            int b = buffer.get(index) & 0xff;
+            int size;
+            int codePoint;
+            if (b < 0x80) {
+                size = 1;
+                codePoint = b;
+            } else if (b >= 0xc2 && b < 0xe0) {
+                size = 2;
+                codePoint = b & 0x1f;
+            } else if (b >= 0xe0 && b < 0xf0) {
+                size = 3;
+                codePoint = b & 0x0f;
+            } else if (b >= 0xf0 && b < 0xf5) {
+                size = 4;
+                codePoint = b & 0x07;
+            } else {
+                size = 1;
+                codePoint = REPLACEMENT;
+            }
+            if (size > 1) {
+                boolean valid = index + size <= to;
+                for (int k = 1; valid && k < size; k++) {
+                    int continuation = buffer.get(index + k) & 0xff;
+                    valid = (continuation & 0xc0) == 0x80;
+                    codePoint = (codePoint << 6) | (continuation & 0x3f);
+                }
+                // overlong encodings, surrogates and code points beyond U+10FFFF are malformed as well
+                if (!valid || (size == 3 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint)))
+                        || (size == 4 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT))) {
+                    size = 1;
+                    codePoint = REPLACEMENT;
+                }
+            }
+            byteOffsets[count] = index - from;
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[count++] = Character.highSurrogate(codePoint);
+                byteOffsets[count] = index - from;
+                chars[count++] = Character.lowSurrogate(codePoint);
+            } else {
+                chars[count++] = (char) codePoint;
+            }
+            index += size;
+        }
+        byteOffsets[count] = byteLength;
+        return count;
+    }
+}
@@ -0,0 +1,90 @@
+package io.sevcik.hypherator;
+
+/**
+ * Reusable buffer holding a word prepared for pattern matching.
+ * <p>
+ * The word is case folded once when loaded, digits are masked as {@code '.'} and the boundary dots the
+ * patterns expect are added around it, so matching never has to create substrings of the input.
+ * The buffer grows to the longest word seen and is then reused for all following words.
+ */
+final class WordBuffer implements CharSequence {
+    static final char BOUNDARY = '.';
+
+    private char[] chars = new char[32];
+    private int length = 0;
+
+    /**
+     * Loads {@code text[from, to)} into the buffer, replacing the previous content.
+     */
+    void load(CharSequence text, int from, int to) {
+        int wordLength = to - from;
+        ensureCapacity(wordLength + 2);
+        chars[0] = BOUNDARY;
+        for (int i = 0; i < wordLength; i++) {
+            chars[i + 1] = fold(text.charAt(from + i));
+        }
+        chars[wordLength + 1] = BOUNDARY;
+        length = wordLength + 2;
+    }
+
+    /**
+     * Loads {@code prefix + text[from, to) + suffix} into the buffer, replacing the previous content.
+     * Used for compound parts whose ends are changed by a non-standard replacement.
+     */
+    void load(String prefix, CharSequence text, int from, int to, String suffix) {
+        int wordLength = prefix.length() + to - from + suffix.length();
+        ensureCapacity(wordLength + 2);
+        chars[0] = BOUNDARY;
+        int index = 1;
+        for (int i = 0; i < prefix.length(); i++) {
+            chars[index++] = fold(prefix.charAt(i));
+        }
+        for (int i = from; i < to; i++) {
+            chars[index++] = fold(text.charAt(i));
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            chars[index++] = fold(suffix.charAt(i));
+        }
+        chars[index] = BOUNDARY;
+        length = wordLength + 2;
+    }
+
+    /**
+     * Direct access to the folded characters, valid up to {@link #length()}.
+     */
+    char[] array() {
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (chars.length < capacity) {
+            chars = new char[Math.max(capacity, chars.length * 2)];
+        }
+    }
+
+    private static char fold(char c) {
+        if (c >= '0' && c <= '9')
+            return BOUNDARY;
+        return Character.toLowerCase(c);
+    }
+}
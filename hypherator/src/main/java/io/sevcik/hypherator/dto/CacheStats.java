@@ -0,0 +1,75 @@
+package io.sevcik.hypherator.dto;
+
+/**
+ * Snapshot of the statistics of a hyphenation result cache.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long rejections;
+    private final long size;
+    private final long maximumSize;
+
+    public CacheStats(long hits, long misses, long evictions, long rejections, long size, long maximumSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.rejections = rejections;
+        this.size = size;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that had to hyphenate the word.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Number of words removed to make room for more frequent ones.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Number of words not admitted because they were less frequent than the word they would have replaced.
+     */
+    public long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Number of words currently cached.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Ratio of hits to all lookups, or 0 if there were no lookups yet.
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions +
+                ", rejections=" + rejections + ", size=" + size + ", maximumSize=" + maximumSize + "}";
+    }
+}
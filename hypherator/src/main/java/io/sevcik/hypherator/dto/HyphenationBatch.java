@@ -0,0 +1,54 @@
+package io.sevcik.hypherator.dto;
+
+/**
+ * Hyphenation breaks of many words, stored in columns.
+ * <p>
+ * The breaks of all words are kept in two flat arrays, {@link #getPositions()} and {@link #getPriorities()}.
+ * The breaks of word {@code w} are found at indices {@code getOffsets()[w]} (inclusive) to
+ * {@code getOffsets()[w + 1]} (exclusive), in ascending order of position. A position is the number of
+ * characters of the word before the break. The arrays are exposed as they are and must not be modified.
+ * <p>
+ * Breaks with a non-standard replacement (e.g. {@code Schiffahrt -> Schiff-fahrt}) are reported by their
+ * position only; use a {@link io.sevcik.hypherator.HyphenationIterator} to apply them.
+ */
+public class HyphenationBatch {
+    private final int[] offsets;
+    private final int[] positions;
+    private final int[] priorities;
+
+    public HyphenationBatch(int[] offsets, int[] positions, int[] priorities) {
+        this.offsets = offsets;
+        this.positions = positions;
+        this.priorities = priorities;
+    }
+
+    public int getWordCount() {
+        return offsets.length - 1;
+    }
+
+    public int getBreakCount() {
+        return positions.length;
+    }
+
+    /**
+     * Start index of the breaks of every word, followed by the total number of breaks.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public int[] getPriorities() {
+        return priorities;
+    }
+
+    /**
+     * Returns the number of breaks of the given word.
+     */
+    public int getBreakCount(int word) {
+        return offsets[word + 1] - offsets[word];
+    }
+}
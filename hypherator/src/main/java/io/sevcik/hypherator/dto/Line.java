@@ -0,0 +1,70 @@
+package io.sevcik.hypherator.dto;
+
+/**
+ * One line of a paragraph broken by the {@code LineBreaker}.
+ */
+public class Line {
+    private final String text;
+    private final int firstToken;
+    private final int lastToken;
+    private final boolean hyphenated;
+    private final double width;
+    private final double ratio;
+
+    public Line(String text, int firstToken, int lastToken, boolean hyphenated, double width, double ratio) {
+        this.text = text;
+        this.firstToken = firstToken;
+        this.lastToken = lastToken;
+        this.hyphenated = hyphenated;
+        this.width = width;
+        this.ratio = ratio;
+    }
+
+    /**
+     * Text of the line: its tokens separated by single spaces, ending with the hyphen sign if the last token is broken.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Index of the first token (partly) on the line.
+     */
+    public int getFirstToken() {
+        return firstToken;
+    }
+
+    /**
+     * Index of the last token (partly) on the line.
+     */
+    public int getLastToken() {
+        return lastToken;
+    }
+
+    /**
+     * Whether the line ends with a hyphenated part of its last token.
+     */
+    public boolean isHyphenated() {
+        return hyphenated;
+    }
+
+    /**
+     * Natural width of the line, with unstretched spaces.
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Adjustment ratio of the line's spaces: positive if they have to stretch to fill the line, negative if they
+     * have to shrink, and below -1 for a line that overflows. The last line of the paragraph is not stretched.
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,139 @@
+package io.sevcik.hypherator.dto;
+
+/**
+ * Snapshot of the runtime metrics of a hyphenation dictionary.
+ * <p>
+ * Hyphenation counters only cover words hyphenated while metrics were enabled, and not words answered
+ * from the result cache. Latencies are kept in a histogram with power-of-two buckets: bucket {@code i}
+ * counts the words that took from 2<sup>i</sup> to 2<sup>i+1</sup> nanoseconds.
+ */
+public class MetricsSnapshot {
+    private final long words;
+    private final long queries;
+    private final long breaks;
+    private final long ruleProbes;
+    private final long compoundRecursions;
+    private final long totalLatencyNanos;
+    private final long[] latencyBuckets;
+    private final long loadTimeNanos;
+    private final int patternCount;
+    private final long footprintBytes;
+
+    public MetricsSnapshot(long words, long queries, long breaks, long ruleProbes, long compoundRecursions, long totalLatencyNanos,
+                           long[] latencyBuckets, long loadTimeNanos, int patternCount, long footprintBytes) {
+        this.words = words;
+        this.queries = queries;
+        this.breaks = breaks;
+        this.ruleProbes = ruleProbes;
+        this.compoundRecursions = compoundRecursions;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.latencyBuckets = latencyBuckets.clone();
+        this.loadTimeNanos = loadTimeNanos;
+        this.patternCount = patternCount;
+        this.footprintBytes = footprintBytes;
+    }
+
+    /**
+     * Number of words hyphenated.
+     */
+    public long getWords() {
+        return words;
+    }
+
+    /**
+     * Number of bounded break queries (the break before or after a position) answered by matching. They are
+     * not counted as words, and their matching work is only included in the rule probes and recursions.
+     */
+    public long getQueries() {
+        return queries;
+    }
+
+    /**
+     * Number of breaks produced for those words.
+     */
+    public long getBreaks() {
+        return breaks;
+    }
+
+    /**
+     * Number of pattern trie lookups done while matching.
+     */
+    public long getRuleProbes() {
+        return ruleProbes;
+    }
+
+    /**
+     * Number of nested matching passes over compound parts and {@code NEXTLEVEL} levels.
+     */
+    public long getCompoundRecursions() {
+        return compoundRecursions;
+    }
+
+    public long getTotalLatencyNanos() {
+        return totalLatencyNanos;
+    }
+
+    /**
+     * Word counts by latency bucket; the last bucket also counts all longer latencies.
+     */
+    public long[] getLatencyBuckets() {
+        return latencyBuckets.clone();
+    }
+
+    /**
+     * Time it took to load the dictionary.
+     */
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    /**
+     * Number of patterns of all levels of the dictionary.
+     */
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Estimated heap taken by the dictionary, in bytes.
+     */
+    public long getFootprintBytes() {
+        return footprintBytes;
+    }
+
+    /**
+     * Mean time per word, or 0 if no word was hyphenated yet.
+     */
+    public double getMeanLatencyNanos() {
+        return words == 0 ? 0 : (double) totalLatencyNanos / words;
+    }
+
+    /**
+     * Returns an upper bound of the given latency quantile (e.g. 0.99), taken from the histogram buckets,
+     * or 0 if no word was hyphenated yet.
+     */
+    public long getLatencyQuantileNanos(double quantile) {
+        long total = 0;
+        for (long count : latencyBuckets) {
+            total += count;
+        }
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            seen += latencyBuckets[i];
+            if (seen >= rank && seen > 0)
+                return i == latencyBuckets.length - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{words=" + words + ", queries=" + queries + ", breaks=" + breaks + ", ruleProbes=" + ruleProbes +
+                ", compoundRecursions=" + compoundRecursions + ", meanLatencyNanos=" + (long) getMeanLatencyNanos() +
+                ", loadTimeNanos=" + loadTimeNanos + ", patternCount=" + patternCount +
+                ", footprintBytes=" + footprintBytes + "}";
+    }
+}
@@ -1,17 +1,39 @@
 package io.sevcik.hypherator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sevcik.hypherator.dto.DictionaryEntry;
+import io.sevcik.hypherator.dto.HyphenationBatch;
 import io.sevcik.hypherator.dto.PotentialBreak;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static io.sevcik.hypherator.HyphenationIterator.DONE;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class HypheratorTest {
@@ -51,6 +73,39 @@ public class HypheratorTest {
         assertEquals("", iterator.getHyphen());
     }
 
+    @Test
+    public void testConcurrentLoadingSharesDictionary() throws Exception {
+        Hypherator hypherator = new Hypherator();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<HyphenDict>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String locale = i % 2 == 0 ? "ro" : "ro-RO";
+                results.add(executor.submit(() -> hypherator.getDictionary(locale)));
+            }
+            HyphenDict first = results.get(0).get();
+            assertNotNull(first, "Romanian dictionary should be loaded");
+            for (var result : results) {
+                assertSame(first, result.get(), "All locales of an entry should share one dictionary instance");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedLoadNeverBlocksWaiters() {
+        DictionaryEntry entry = new DictionaryEntry();
+        entry.setLocations(List.of("xx/broken.dic"));
+        entry.setLocales(List.of("xx"));
+        DictionaryRegistry registry = new DictionaryRegistry(Map.of("xx", entry), e -> {
+            throw new StackOverflowError();
+        });
+        assertThrows(StackOverflowError.class, () -> registry.get("xx"));
+        // the load is completed despite the error, so later lookups do not wait for it forever
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertNull(registry.get("xx")));
+    }
+
     @Test
     public void testRealWorldIssues() throws IOException {
         // Create a new Hyphenator instance
@@ -153,4 +208,665 @@ public class HypheratorTest {
     }
 
 
+
+    @Test
+    public void testCompiledDictionaries() throws IOException {
+        List<String> allTcs;
+        try (InputStream tcStream = getClass().getResourceAsStream("/data/testcases.txt")) {
+            allTcs = new java.io.BufferedReader(new java.io.InputStreamReader(tcStream, StandardCharsets.UTF_8))
+                    .lines()
+                    .map(String::trim)
+                    .collect(Collectors.toList());
+        }
+
+        Hyphenate hyphenate = new HyphenateImpl();
+        for (String tcName : allTcs) {
+            ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+            try (InputStream dictStream = getClass().getResourceAsStream("/data/" + tcName + ".dic")) {
+                HyphenDictCompiler.compile(dictStream, compiled);
+            }
+            HyphenDict dict = loadDictionary(tcName);
+            HyphenDict compiledDict = HyphenDictBuilder.fromBinaryStream(new ByteArrayInputStream(compiled.toByteArray()));
+
+            List<String> words;
+            try (InputStream dataStream = getClass().getResourceAsStream("/data/" + tcName + ".dat")) {
+                words = new java.io.BufferedReader(new java.io.InputStreamReader(dataStream, StandardCharsets.UTF_8))
+                        .lines()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.contains("="))
+                        .collect(Collectors.toList());
+            }
+
+            for (String word : words) {
+                List<String> expected = hyphenate.hyphenate(dict, word).stream()
+                        .map(pb -> hyphenate.applyBreak(word, pb).getFirst() + "=" + hyphenate.applyBreak(word, pb).getSecond())
+                        .collect(Collectors.toList());
+                List<String> produced = hyphenate.hyphenate(compiledDict, word).stream()
+                        .map(pb -> hyphenate.applyBreak(word, pb).getFirst() + "=" + hyphenate.applyBreak(word, pb).getSecond())
+                        .collect(Collectors.toList());
+                assertEquals(expected, produced, "Compiled dictionary differs for '" + word + "' in " + tcName);
+            }
+        }
+
+        // the compiled files built for the bundled dictionaries are up to date with their sources
+        List<DictionaryEntry> entries;
+        try (InputStream allStream = getClass().getResourceAsStream("/hyphen/all.json")) {
+            entries = List.of(mapper.readValue(allStream, DictionaryEntry[].class));
+        }
+        for (DictionaryEntry entry : entries) {
+            for (String location : entry.getLocations()) {
+                ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+                try (InputStream dictStream = getClass().getResourceAsStream("/hyphen/" + location)) {
+                    HyphenDictCompiler.compile(dictStream, compiled);
+                }
+                try (InputStream bundled = getClass().getResourceAsStream("/hyphen/" + HyphenDictCompiler.compiledLocation(location))) {
+                    assertNotNull(bundled, "Missing compiled dictionary for " + location);
+                    assertArrayEquals(compiled.toByteArray(), bundled.readAllBytes(), "Stale compiled dictionary for " + location);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResultCacheKeepsFrequentWords() throws IOException {
+        HyphenDict dict = loadDictionary("base");
+        BreakCache cache = new BreakCache(16);
+        HyphenationIterator iterator = new HyphenationIteratorImpl(dict, cache);
+        HyphenationIterator uncached = new HyphenationIteratorImpl(dict);
+
+        // frequent words keep recurring while a long tail of rare words passes through
+        List<String> hotWords = List.of("hyphenation", "example", "Schiffahrt", "cooperate");
+        for (int i = 0; i < 1000; i++) {
+            for (String word : hotWords) {
+                iterator.setWord(word);
+            }
+            iterator.setWord("rare" + i + "word");
+        }
+
+        for (String word : hotWords) {
+            assertNotNull(cache.get(word), "Frequent word should stay cached: " + word);
+            assertEquals(allBreaks(uncached, word), allBreaks(iterator, word));
+        }
+
+        var stats = cache.stats();
+        assertTrue(stats.getHits() > 0);
+        assertTrue(stats.getRejections() > 0);
+        assertTrue(stats.getSize() <= 16);
+    }
+
+    @Test
+    public void testBatchAndPackedMatchSingleWords() throws IOException {
+        HyphenDict dict = loadDictionary("base");
+        List<String> words = List.of("hyphenation", "", "example", "Schiffahrt", "a", "cooperate", "123test",
+                "hyphenation".repeat(8));
+        Hyphenate hyphenate = new HyphenateImpl();
+        var batch = hyphenate.hyphenateAll(dict, words);
+
+        assertEquals(words.size(), batch.getWordCount());
+        for (int w = 0; w < words.size(); w++) {
+            List<PotentialBreak> expected = hyphenate.hyphenate(dict, words.get(w));
+            assertEquals(expected.size(), batch.getBreakCount(w), "Break count of " + words.get(w));
+            for (int k = 0; k < expected.size(); k++) {
+                PotentialBreakImpl pb = (PotentialBreakImpl) expected.get(k);
+                assertEquals(pb.position(), batch.getPositions()[batch.getOffsets()[w] + k]);
+                assertEquals(pb.priority(), batch.getPriorities()[batch.getOffsets()[w] + k]);
+            }
+
+            PackedBreaks packed = hyphenate.hyphenatePacked(dict, words.get(w));
+            assertEquals(words.get(w).length() < 64, packed.hasMask());
+            assertEquals(expected.size(), packed.size());
+            List<PotentialBreak> view = packed.toList();
+            for (int k = 0; k < expected.size(); k++) {
+                PotentialBreakImpl pb = (PotentialBreakImpl) expected.get(k);
+                assertEquals(pb.position(), packed.position(k));
+                assertEquals(pb.priority(), packed.priority(k));
+                assertEquals(pb.breakRule().getReplacement(), ((PotentialBreakImpl) view.get(k)).breakRule().getReplacement());
+                assertEquals(hyphenate.applyBreak(words.get(w), pb).getFirst(), hyphenate.applyBreak(words.get(w), view.get(k)).getFirst());
+            }
+        }
+    }
+
+    @Test
+    public void testTextHyphenatorMarksWords() throws IOException {
+        HyphenDict dict = loadDictionary("base");
+        TextHyphenator textHyphenator = new TextHyphenator(dict, null);
+        textHyphenator.setMarker("=");
+        HyphenationIterator iterator = new HyphenationIteratorImpl(dict);
+
+        StringBuilder expected = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        // enough words to cross the read buffer boundary inside a word
+        for (int i = 0; i < 2000; i++) {
+            String word = List.of("hyphenation", "example", "cooperate", "an", "dictionary").get(i % 5);
+            text.append(word).append(i % 7 == 0 ? ", " : " ");
+            iterator.setWord(word);
+            int written = 0;
+            for (var pb = iterator.first(); pb != DONE; pb = iterator.next()) {
+                int position = ((PotentialBreakImpl) pb).position();
+                expected.append(word, written, position).append('=');
+                written = position;
+            }
+            expected.append(word.substring(written)).append(i % 7 == 0 ? ", " : " ");
+        }
+
+        assertEquals(expected.toString(), textHyphenator.hyphenate(text));
+        StringWriter out = new StringWriter();
+        textHyphenator.hyphenate(new StringReader(text.toString()), out);
+        assertEquals(expected.toString(), out.toString());
+
+        // letters joined by an apostrophe or a middle dot are one word, the punctuation around them is copied
+        for (String joined : List.of("cooperation's", "hyphen·ation", "hyphen’ation")) {
+            PackedBreaks breaks = new HyphenateImpl().hyphenatePacked(dict, joined);
+            StringBuilder marked = new StringBuilder(joined);
+            for (int k = breaks.size() - 1; k >= 0; k--) {
+                marked.insert(breaks.position(k), '=');
+            }
+            assertEquals("(" + marked + "),", textHyphenator.hyphenate("(" + joined + "),"));
+        }
+    }
+
+    @Test
+    public void testMetricsRecordHyphenation() {
+        Hypherator.setMetricsEnabled(true);
+        try {
+            HyphenationIterator iterator = Hypherator.getInstance("ro");
+            assertNotNull(iterator, "Romanian dictionary should be loaded");
+            var before = Hypherator.getMetrics("ro");
+            assertNotNull(before);
+            assertTrue(before.getPatternCount() > 0);
+            assertTrue(before.getLoadTimeNanos() > 0);
+
+            int breaks = 0;
+            for (String word : List.of("libertate", "demnitate", "fraternității", "învățământul")) {
+                iterator.setWord(word);
+                for (var pb = iterator.first(); pb != DONE; pb = iterator.next()) {
+                    breaks++;
+                }
+            }
+
+            var after = Hypherator.getMetrics("ro-RO");
+            assertEquals(before.getWords() + 4, after.getWords());
+            assertEquals(before.getBreaks() + breaks, after.getBreaks());
+            assertTrue(after.getRuleProbes() > before.getRuleProbes());
+            // every dictionary has an implicit compound level, so every word is matched at least twice
+            assertTrue(after.getCompoundRecursions() >= before.getCompoundRecursions() + 4);
+            assertTrue(after.getLatencyQuantileNanos(0.5) > 0);
+            assertTrue(Hypherator.getAllMetrics().containsKey("ro"));
+
+            // bounded break queries are counted apart from words
+            assertNotNull(Hypherator.getHyphenator("ro").breakBefore("independență", 6, 9));
+            var queried = Hypherator.getMetrics("ro");
+            assertEquals(after.getWords(), queried.getWords());
+            assertEquals(after.getBreaks(), queried.getBreaks());
+            assertEquals(after.getQueries() + 1, queried.getQueries());
+            assertTrue(queried.getRuleProbes() > after.getRuleProbes());
+
+            // all hyphenators of a thread share its engine, but each records into its own dictionary
+            Hyphenator latin = Hypherator.getHyphenator("la");
+            var latinBefore = Hypherator.getMetrics("la");
+            latin.hyphenate("gratia");
+            Hypherator.getHyphenator("ro").hyphenate("libertate");
+            assertEquals(latinBefore.getWords() + 1, Hypherator.getMetrics("la").getWords());
+            assertEquals(queried.getWords() + 1, Hypherator.getMetrics("ro").getWords());
+        } finally {
+            Hypherator.setMetricsEnabled(false);
+        }
+    }
+
+    @Test
+    public void testParallelPreload() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            var ready = Hypherator.preloadAsync(executor, "ro", "la", "ro-RO", "xx-XX");
+            ready.get(30, TimeUnit.SECONDS);
+            assertTrue(Hypherator.whenReady("ro_RO").get());
+            assertTrue(Hypherator.whenReady("la").get());
+            assertFalse(Hypherator.whenReady("xx-XX").get());
+            assertNotNull(Hypherator.getInstance("la"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedHyphenatorIsThreadSafe() throws Exception {
+        HyphenDict dict = loadDictionary("base");
+        Hyphenator hyphenator = new Hyphenator(dict, new BreakCache(16), null);
+        List<String> words = List.of("hyphenation", "example", "cooperate", "an", "dictionary", "supercalifragilistic");
+        HyphenationIterator reference = new HyphenationIteratorImpl(dict);
+        Map<String, List<String>> expected = new HashMap<>();
+        for (String word : words) {
+            expected.put(word, allBreaks(reference, word));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    HyphenationIterator view = hyphenator.iterator();
+                    for (int i = 0; i < 2000; i++) {
+                        String word = words.get(i % words.size());
+                        PackedBreaks breaks = hyphenator.hyphenate(word);
+                        List<String> actual = new ArrayList<>();
+                        for (int k = 0; k < breaks.size(); k++) {
+                            var parts = hyphenator.applyBreak(word, breaks, k);
+                            actual.add(parts.getFirst() + "=" + parts.getSecond());
+                        }
+                        assertEquals(expected.get(word), actual);
+                        assertEquals(expected.get(word), allBreaks(view, word));
+                    }
+                }));
+            }
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLineBreakerFillsLines() throws IOException {
+        HyphenDict dict = loadDictionary("base").withHyphen("-");
+        LineBreaker lineBreaker = new LineBreaker(new Hyphenator(dict, null, null), String::length);
+        // spaces do not shrink, so no line may be longer than its width
+        lineBreaker.setSpaceElasticity(0.5, 0);
+        List<String> tokens = List.of(("the hyphenation of a dictionary is an example of how to cooperate on " +
+                "hyphenation when the dictionary of patterns is an example of cooperation").split(" "));
+
+        var lines = lineBreaker.breakLines(tokens, 12, 16);
+        StringBuilder text = new StringBuilder();
+        boolean hyphenated = false;
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i);
+            assertTrue(line.getText().length() <= (i == 0 ? 12 : 16), "Line overflows: " + line);
+            if (line.isHyphenated()) {
+                hyphenated = true;
+                text.append(line.getText(), 0, line.getText().length() - 1);
+            } else {
+                text.append(line.getText()).append(' ');
+            }
+        }
+        assertTrue(hyphenated, "Narrow lines should be hyphenated");
+        assertEquals(String.join(" ", tokens), text.toString().trim());
+        assertEquals(tokens.size() - 1, lines.get(lines.size() - 1).getLastToken());
+
+        // a word wider than the line still ends up on the lines, overflowing them
+        var overfull = lineBreaker.breakLines(List.of("hyphenation"), 3);
+        assertEquals("hyphenation", overfull.stream()
+                .map(line -> line.isHyphenated() ? line.getText().substring(0, line.getText().length() - 1) : line.getText())
+                .collect(Collectors.joining()));
+    }
+
+    @Test
+    public void testBoundedBreakQueriesMatchFullHyphenation() throws IOException {
+        List<String> allTcs;
+        try (InputStream tcStream = getClass().getResourceAsStream("/data/testcases.txt")) {
+            allTcs = new BufferedReader(new InputStreamReader(tcStream, StandardCharsets.UTF_8))
+                    .lines().map(String::trim).filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        }
+        for (String tcName : allTcs) {
+            HyphenDict dict;
+            List<String> words;
+            try (InputStream dictStream = getClass().getResourceAsStream("/data/" + tcName + ".dic");
+                 InputStream dataStream = getClass().getResourceAsStream("/data/" + tcName + ".dat")) {
+                dict = HyphenDictBuilder.fromInputStream(dictStream);
+                words = new BufferedReader(new InputStreamReader(dataStream, StandardCharsets.UTF_8))
+                        .lines().map(String::trim).filter(line -> !line.isEmpty() && !line.contains("=")).collect(Collectors.toList());
+            }
+            Hyphenator hyphenator = new Hyphenator(dict, null, null);
+            Hyphenate hyphenate = new HyphenateImpl();
+            for (String word : words) {
+                List<PotentialBreak> all = hyphenate.hyphenate(dict, word);
+                for (int urgency = 0; urgency <= 9; urgency++) {
+                    for (int position = -1; position <= word.length() + 1; position++) {
+                        PotentialBreak before = null;
+                        PotentialBreak after = null;
+                        for (PotentialBreak pb : all) {
+                            PotentialBreakImpl impl = (PotentialBreakImpl) pb;
+                            if (impl.priority() < 10 - urgency)
+                                continue;
+                            if (impl.position() <= position)
+                                before = pb;
+                            if (impl.position() > position && after == null)
+                                after = pb;
+                        }
+                        String context = tcName + " " + word + " @" + position + " urgency " + urgency;
+                        assertEquals(describe(word, before), describe(word, hyphenator.breakBefore(word, position, urgency)), context);
+                        assertEquals(describe(word, after), describe(word, hyphenator.breakAfter(word, position, urgency)), context);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDictionariesShareBreakRules() throws IOException {
+        HyphenDict first = loadDictionary("basealt");
+        HyphenDict second = loadDictionary("basealt");
+        int replacements = 0;
+        for (HyphenDict level = first.nextLevel, other = second.nextLevel; level != null; level = level.nextLevel, other = other.nextLevel) {
+            HyphenDict.BreakRule[] rules = level.trie.breakRules();
+            assertEquals(rules.length, other.trie.breakRules().length);
+            for (int i = 0; i < rules.length; i++) {
+                assertSame(rules[i], other.trie.breakRules()[i]);
+                if (rules[i].getReplacement() == null) {
+                    assertSame(HyphenDict.BreakRule.of(rules[i].getValue()), rules[i]);
+                } else {
+                    replacements++;
+                }
+            }
+        }
+        assertTrue(replacements > 0, "basealt should have replacement rules");
+        assertSame(HyphenDict.BreakRule.of(1, "ff=f", 2, 2), HyphenDict.BreakRule.of(1, "ff=f", 2, 2));
+        assertNotSame(HyphenDict.BreakRule.of(1, "ff=f", 2, 2), HyphenDict.BreakRule.of(3, "ff=f", 2, 2));
+
+        assertTrue(first.footprint() > first.nextLevel.footprint());
+        Hypherator.preload("ro");
+        assertTrue(Hypherator.getMetrics("ro").getFootprintBytes() > 0);
+    }
+
+    @Test
+    public void testOverlayAddsPatternsAndExceptions() throws IOException {
+        HyphenDict dict = loadDictionary("base");
+        HyphenationOverlay overlay = HyphenationOverlay.builder()
+                .addException("Hy-pher-a-tor")
+                .addPattern("o4o")
+                .addPattern("o5p")
+                .build();
+        HyphenDict overlaid = dict.withOverlay(overlay);
+        assertSame(dict.trie, overlaid.trie);
+        assertSame(dict.nextLevel.trie, overlaid.nextLevel.trie);
+        assertSame(overlay.trie, overlaid.nextLevel.overlayTrie);
+
+        // both use the engine of this thread, alternately and with different dictionaries
+        Hyphenator base = new Hyphenator(dict, null, null);
+        Hyphenator tenant = new Hyphenator(overlaid, null, null);
+        assertEquals(List.of("Hy=pherator", "Hypher=ator", "Hyphera=tor"),
+                allBreaks(tenant.iterator(), "Hypherator"));
+        assertEquals(allBreaks(base.iterator(), "example"), allBreaks(tenant.iterator(), "example"));
+        // the even value of the overlay beats the odd one of the dictionary
+        assertTrue(allBreaks(base.iterator(), "cooperate").contains("co=operate"));
+        assertFalse(allBreaks(tenant.iterator(), "cooperate").contains("co=operate"));
+        assertFalse(allBreaks(base.iterator(), "cooperate").contains("coo=perate"));
+        assertTrue(allBreaks(tenant.iterator(), "cooperate").contains("coo=perate"));
+
+        HyphenationOverlay extended = overlay.toBuilder().addException("co-op-er-ate").build();
+        assertEquals(List.of("co=operate", "coop=erate", "cooper=ate"),
+                allBreaks(new Hyphenator(dict.withOverlay(extended), null, null).iterator(), "cooperate"));
+        assertThrows(IllegalArgumentException.class, () -> HyphenationOverlay.builder().addException("-ab").build());
+    }
+
+    @Test
+    public void testWatchedDirectoryReloadsChangedDictionary(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("xx/base.dic");
+        Files.createDirectories(file.getParent());
+        try (InputStream dictStream = getClass().getResourceAsStream("/data/base.dic")) {
+            Files.copy(dictStream, file);
+        }
+        DictionaryEntry entry = new DictionaryEntry();
+        entry.setLocations(List.of("xx/base.dic"));
+        entry.setLocales(List.of("xx"));
+        DictionaryRegistry registry = new DictionaryRegistry(Map.of("xx", entry),
+                e -> DictionaryWatcher.load(directory, e.getLocations().get(0)));
+        HyphenDict original = registry.get("xx");
+        HyphenationIterator iterator = registry.hyphenatorFor(original).iterator();
+
+        try (DictionaryWatcher watcher = new DictionaryWatcher(directory, registry)) {
+            assertTrue(watcher.isOpen());
+            Files.writeString(file, "\no5p\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (registry.get("xx") == original && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+        HyphenDict reloaded = registry.get("xx");
+        assertNotSame(original, reloaded, "The changed dictionary should be swapped in");
+        assertTrue(allBreaks(registry.hyphenatorFor(reloaded).iterator(), "cooperate").contains("coo=perate"));
+        // the iterator created before the swap keeps its dictionary
+        assertFalse(allBreaks(iterator, "cooperate").contains("coo=perate"));
+        // but the registry no longer keeps state for the old dictionary
+        registry.setPersistentCache(directory, PersistentBreakCache.MIN_SIZE);
+        assertNotSame(registry.hyphenatorFor(original), registry.hyphenatorFor(original));
+        assertNull(registry.persistentCacheFor(original));
+        assertNotNull(registry.persistentCacheFor(reloaded));
+        registry.setPersistentCache(null, 0);
+    }
+
+    @Test
+    public void testLocaleResolutionFallsBack() {
+        LocaleResolver resolver = new LocaleResolver(List.of("de-DE", "de-AT", "en-US", "en-GB", "sr-Latn", "ro", "ro-RO"));
+        assertEquals("de-AT", resolver.resolve("de_AT"));
+        assertEquals("de-AT", resolver.resolve("DE-at"));
+        assertEquals("de-AT", resolver.resolve("de-AT-1996"));
+        assertEquals("en-US", resolver.resolve("en-Latn-US"));
+        assertEquals("en-GB", resolver.resolve(Locale.UK));
+        assertEquals("sr-Latn", resolver.resolve("sr-Latn-RS"));
+        assertEquals("ro", resolver.resolve("ro-MD"));
+        assertNull(resolver.resolve("xx-YY"));
+        assertNull(resolver.resolve("xx-YY"));
+        assertEquals(List.of("de-at-1996", "de-at", "de"), LocaleResolver.fallbacks("de-AT-1996"));
+        // the language fallback takes the main region and never another script
+        assertEquals("de-DE", resolver.resolve("de-CH"));
+        assertEquals("en-US", resolver.resolve("en-AU"));
+        assertEquals("sr-Latn", resolver.resolve("sr"));
+        assertNull(resolver.resolve("sr-Cyrl"));
+        assertEquals("sr-Cyrl", new LocaleResolver(List.of("sr-Latn", "sr-Cyrl")).resolve("sr-Cyrl-RS"));
+
+        LocaleHandle handle = Hypherator.resolve("ro-Latn-MD");
+        assertNotNull(handle);
+        assertEquals("ro", handle.getLocale());
+        assertSame(handle.getHyphenator(), Hypherator.getHyphenator("ro_MD"));
+        assertNotNull(handle.newIterator());
+        assertNull(Hypherator.resolve("zz"));
+    }
+
+    @Test
+    public void testUtf8BytesMatchStrings() throws IOException {
+        Hyphenator hyphenator = Hypherator.getHyphenator("ro");
+        List<byte[]> words = new ArrayList<>();
+        for (String word : List.of("înțelegere", "şcoală", "pădure", "ministerul", "𝔸bcdefgh")) {
+            words.add(word.getBytes(StandardCharsets.UTF_8));
+        }
+        words.add(new byte[] {'a', 'b', (byte) 0xc3, 'c', 'd', 'e', 'f', 'g'});
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        text.write(' ');
+        for (byte[] word : words) {
+            text.write(word);
+            text.write(' ');
+        }
+        byte[] bytes = text.toByteArray();
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+
+        int offset = 1;
+        for (byte[] word : words) {
+            // the reference is the word as the JDK decodes it, with malformed bytes replaced
+            String decoded = new String(word, StandardCharsets.UTF_8);
+            PackedBreaks expected = hyphenator.hyphenate(decoded);
+            for (ByteBuffer buffer : List.of(heap, direct)) {
+                Utf8Breaks breaks = hyphenator.hyphenateUtf8(buffer, offset, word.length);
+                assertEquals(expected.size(), breaks.size(), decoded);
+                for (int k = 0; k < breaks.size(); k++) {
+                    assertEquals(expected.position(k), breaks.charPosition(k), decoded);
+                    assertEquals(expected.priority(k), breaks.priority(k), decoded);
+                    // the bytes before the break decode to the characters before it
+                    String before = decoded.substring(0, breaks.charPosition(k));
+                    assertEquals(before, new String(word, 0, breaks.byteOffset(k), StandardCharsets.UTF_8), decoded);
+                }
+            }
+            offset += word.length + 1;
+        }
+        assertTrue(hyphenator.hyphenateUtf8(heap.position(1).limit(1 + words.get(0).length)).size() > 0);
+        assertEquals(1, heap.position());
+        assertThrows(IndexOutOfBoundsException.class, () -> hyphenator.hyphenateUtf8(direct, bytes.length - 1, 2));
+    }
+
+    @Test
+    public void testPersistentCacheSurvivesReopening(@TempDir Path directory) throws IOException {
+        HyphenDict dict = loadDictionary("base");
+        List<String> words = List.of("hyphenation", "example", "cooperate", "dictionary", "encyclopedia");
+        Hyphenator plain = new Hyphenator(dict, null, null);
+
+        try (PersistentBreakCache writer = PersistentBreakCache.open(directory, dict, 1 << 16);
+             PersistentBreakCache reader = PersistentBreakCache.open(directory, dict, 1 << 16)) {
+            assertTrue(writer.isWriter());
+            assertFalse(reader.isWriter(), "Only one cache appends to the file");
+            Hyphenator cached = new Hyphenator(dict, null, writer, null);
+            for (String word : words) {
+                assertEquals(describe(plain.hyphenate(word)), describe(cached.hyphenate(word)));
+            }
+            for (String word : words) {
+                assertEquals(describe(plain.hyphenate(word)), describe(reader.get(word)), word);
+            }
+            assertNull(reader.get("unknown"));
+        }
+
+        try (PersistentBreakCache reopened = PersistentBreakCache.open(directory, dict, 1 << 20)) {
+            assertTrue(reopened.isWriter());
+            assertEquals(1 << 16, Files.size(reopened.file()), "An existing file keeps its size");
+            for (String word : words) {
+                assertEquals(describe(plain.hyphenate(word)), describe(reopened.get(word)), word);
+            }
+            // a full file stops taking words instead of growing
+            for (int i = 0; i < 10_000; i++) {
+                reopened.put("word" + i, PackedBreaks.EMPTY);
+            }
+            assertNotNull(reopened.get("word10"));
+            assertNull(reopened.get("word9999"));
+            assertEquals(1 << 16, Files.size(reopened.file()));
+        }
+    }
+
+    @Test
+    public void testProcessorFollowsDemand() throws Exception {
+        HyphenDict dict = loadDictionary("base");
+        Hyphenator hyphenator = new Hyphenator(dict, null, null);
+        List<List<String>> batches = List.of(List.of("hyphenation", "example"), List.of("cooperate"),
+                List.of("dictionary", "encyclopedia", "a"), List.of(), List.of("hyphenation"));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        SubmissionPublisher<List<String>> publisher = new SubmissionPublisher<>();
+        try {
+            HyphenationProcessor processor = new HyphenationProcessor(hyphenator, executor);
+            publisher.subscribe(processor);
+            BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+            AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+            processor.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription.set(s);
+                    s.request(2);
+                }
+
+                @Override
+                public void onNext(HyphenationBatch item) {
+                    received.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    received.add(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    received.add("complete");
+                }
+            });
+            batches.forEach(publisher::submit);
+            publisher.close();
+
+            List<Object> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(received.poll(10, TimeUnit.SECONDS));
+            }
+            // nothing more is hyphenated until more results are requested
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+            subscription.get().request(Long.MAX_VALUE);
+            for (int i = 2; i <= batches.size(); i++) {
+                results.add(received.poll(10, TimeUnit.SECONDS));
+            }
+            assertEquals("complete", results.get(batches.size()));
+            for (int i = 0; i < batches.size(); i++) {
+                var expected = hyphenator.hyphenateAll(batches.get(i));
+                var actual = (HyphenationBatch) results.get(i);
+                assertArrayEquals(expected.getOffsets(), actual.getOffsets());
+                assertArrayEquals(expected.getPositions(), actual.getPositions());
+                assertArrayEquals(expected.getPriorities(), actual.getPriorities());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBulkHyphenationMatchesSequential() throws Exception {
+        HyphenDict dict = loadDictionary("base");
+        List<String> words = new ArrayList<>();
+        try (InputStream dataStream = getClass().getResourceAsStream("/data/base.dat")) {
+            List<String> lines = new BufferedReader(new InputStreamReader(dataStream, StandardCharsets.UTF_8)).lines()
+                    .map(String::trim).filter(line -> !line.isEmpty() && !line.contains("=")).collect(Collectors.toList());
+            for (int i = 0; words.size() < 20_000; i++) {
+                words.add(lines.get(i % lines.size()));
+            }
+        }
+        Hyphenator hyphenator = new Hyphenator(dict, null, null);
+        var expected = hyphenator.hyphenateAll(words);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<HyphenationBatch> results = List.of(
+                    hyphenator.hyphenateAllAsync(words, pool).get(),
+                    hyphenator.hyphenateAllAsync(words, executor).get(),
+                    // of unknown size, split as it is read
+                    hyphenator.hyphenateAllAsync(Spliterators.spliteratorUnknownSize(words.iterator(), 0), pool).get(),
+                    hyphenator.hyphenateAllAsync(List.<String>of()).get());
+            for (var result : results.subList(0, 3)) {
+                assertArrayEquals(expected.getOffsets(), result.getOffsets());
+                assertArrayEquals(expected.getPositions(), result.getPositions());
+                assertArrayEquals(expected.getPriorities(), result.getPriorities());
+            }
+            assertEquals(0, results.get(3).getWordCount());
+        } finally {
+            pool.shutdown();
+            executor.shutdown();
+        }
+        assertThrows(ExecutionException.class, () -> Hypherator.hyphenateAllAsync("zz", words).get());
+    }
+
+    private HyphenDict loadDictionary(String name) throws IOException {
+        try (InputStream dictStream = getClass().getResourceAsStream("/data/" + name + ".dic")) {
+            return HyphenDictBuilder.fromInputStream(dictStream);
+        }
+    }
+
+    private static String describe(PackedBreaks breaks) {
+        if (breaks == null)
+            return null;
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < breaks.size(); k++) {
+            result.append(breaks.position(k)).append(':').append(breaks.priority(k)).append(' ');
+        }
+        return result.toString();
+    }
+
+    private static String describe(String word, PotentialBreak pb) {
+        if (pb == null)
+            return null;
+        var parts = new HyphenateImpl().applyBreak(word, pb);
+        return parts.getFirst() + "=" + parts.getSecond() + " " + ((PotentialBreakImpl) pb).priority();
+    }
+
+    private static List<String> allBreaks(HyphenationIterator iterator, String word) {
+        List<String> result = new ArrayList<>();
+        iterator.setWord(word);
+        for (var pb = iterator.first(); pb != DONE; pb = iterator.next()) {
+            var parts = iterator.applyBreak(pb);
+            result.add(parts.getFirst() + "=" + parts.getSecond());
+        }
+        return result;
+    }
+
 }
\ No newline at end of file